@@ -1,21 +1,29 @@
 import icg.Quadruple;
 import icg.TacGenerator;
 import lexer.Lexer;
-import lexer.Token;
+import lexer.MappedSource;
+import lexer.TokenBuffer;
 import optimizer.Optimizer;
+import optimizer.Profile;
+import optimizer.Profiler;
 import parser.Parser;
 import parser.ast.Stmt;
 import parser.AstPrinter;
 import semantic.SemanticAnalyzer;
+import target.PeepholeOptimizer;
 import target.TargetCodeGeneration;
+import vm.StackVM;
+import vm.StdIO;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
 
 public class Main {
     static boolean hadError = false; // Global error flag
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         // Your example code from Project.pdf [cite: 289-307]
-        String sourceCode = "int x;\n" +
+        CharSequence sourceCode = "int x;\n" +
                 "int y;\n" +
                 "x = y + 5;\n" +
                 "if (x < 5) {\n" +
@@ -29,14 +37,33 @@ public class Main {
                 "print(x);\n" +
                 "read(y);";
 
+        // Usage: Main [file] [--profile-out profile] [--profile profile]
+        String file = null;
+        String profileOut = null;
+        String profileIn = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--profile-out") && i + 1 < args.length) {
+                profileOut = args[++i];
+            } else if (args[i].equals("--profile") && i + 1 < args.length) {
+                profileIn = args[++i];
+            } else {
+                file = args[i];
+            }
+        }
+
+        // A file given on the command line is memory-mapped instead of read into a String
+        if (file != null) {
+            sourceCode = MappedSource.open(Paths.get(file));
+        }
+
         // --- 1. LEXICAL ANALYSIS ---
         System.out.println("Scanning source code...");
         Lexer lexer = new Lexer(sourceCode);
-        List<Token> tokens = lexer.scanTokens();
+        TokenBuffer tokens = lexer.scanBuffer();
 
         System.out.println("Found " + tokens.size() + " tokens:");
-        for (Token token : tokens) {
-            System.out.println(token);
+        for (int i = 0; i < tokens.size(); i++) {
+            System.out.println(tokens.token(i));
         }
 
         // --- 2. SYNTAX ANALYSIS ---
@@ -68,7 +95,7 @@ public class Main {
 
         // --- 4. INTERMEDIATE CODE GENERATION ---
         System.out.println("\nGenerating Three-Address Code...");
-        TacGenerator tacGen = new TacGenerator();
+        TacGenerator tacGen = new TacGenerator(analyzer.getResolution());
         List<Quadruple> quads = tacGen.generate(ast);
 
         // Print the formatted table
@@ -80,10 +107,20 @@ public class Main {
             System.out.println(quad);
         }
 
+        // --- PROFILING RUN: execute the TAC as is and record its counts ---
+        if (profileOut != null) {
+            System.out.println("\nProfiling run...");
+            Profile profile = new Profiler().profile(quads, StdIO.stdin(), StdIO.stdout());
+            profile.write(Paths.get(profileOut));
+            System.out.println("Profile written to " + profileOut + ".");
+            return;
+        }
+
         // --- 5. CODE OPTIMIZATION ---
         System.out.println("\nOptimizing Three-Address Code...");
         Optimizer optimizer = new Optimizer();
-        List<Quadruple> optimizedQuads = optimizer.optimize(quads);
+        Profile profile = (profileIn != null) ? Profile.read(Paths.get(profileIn)) : Profile.EMPTY;
+        List<Quadruple> optimizedQuads = optimizer.optimize(quads, profile);
 
         // Print the optimized TAC
         System.out.println("\n--- Optimized Three-Address Code ---");
@@ -96,9 +133,15 @@ public class Main {
         // --- 6. TARGET CODE GENERATION ---
         System.out.println("\nGenerating target stack-based assembly...");
         TargetCodeGeneration targetGen = new TargetCodeGeneration();
-        List<String> assembly = targetGen.generate(optimizedQuads);
+        List<String> assembly = new PeepholeOptimizer().optimize(targetGen.generate(optimizedQuads));
 
         System.out.println("\n--- Target Stack-Based Assembly ---");
         assembly.forEach(System.out::println);
+
+        // --- 7. EXECUTION ---
+        System.out.println("\nRunning on the stack VM...");
+        StackVM vm = new StackVM(assembly);
+        vm.run(StdIO.stdin(), StdIO.stdout());
+        System.out.println("Executed " + vm.getExecutedCount() + " instructions.");
     }
 }
\ No newline at end of file
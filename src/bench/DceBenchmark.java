@@ -0,0 +1,104 @@
+package bench;
+
+import icg.TacGenerator;
+import ir.IrProgram;
+import lexer.Lexer;
+import optimizer.DeadCodeEliminator;
+import parser.Parser;
+import parser.ast.Stmt;
+import semantic.SemanticAnalyzer;
+
+import java.util.List;
+
+/**
+ * Times {@link DeadCodeEliminator} on programs of doubling size and fails
+ * if its cost grows much faster than the program. The program is one long
+ * chain of dead copies, {@code v1 = v0; v2 = v1; ...}, with a branch
+ * between links so the chain spans blocks; a pass that needs a round of
+ * liveness per link, or bit vectors over every block, is quadratic on it.
+ *
+ * Single doublings are noisy at these times, so the check is on the
+ * growth from the smallest program to the largest, as an exponent of the
+ * size: 1 is linear, 2 quadratic.
+ *
+ * Usage: java bench.DceBenchmark [smallestLinks] [doublings] [runs]
+ */
+public class DceBenchmark {
+
+    /** Largest allowed exponent of the time's growth with program size. */
+    private static final double MAX_EXPONENT = 1.5;
+
+    public static void main(String[] args) {
+        int links = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        int doublings = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        int runs = (args.length > 2) ? Integer.parseInt(args[2]) : 7;
+
+        IrProgram[] programs = new IrProgram[doublings + 1];
+        for (int d = 0; d <= doublings; d++) {
+            List<Stmt> ast = new Parser(new Lexer(program(links << d)).scanTokens()).parse();
+            SemanticAnalyzer analyzer = new SemanticAnalyzer();
+            if (!analyzer.analyze(ast)) {
+                throw new IllegalStateException("Benchmark program failed semantic analysis.");
+            }
+            programs[d] = IrProgram.fromQuads(new TacGenerator(analyzer.getResolution()).generate(ast));
+        }
+        // Warm up on every size, so the small ones are not timed cold
+        for (int d = 0; d <= doublings; d++) {
+            eliminate(programs[d], links << d);
+        }
+
+        System.out.printf("%-8s | %8s | %10s | %8s%n", "Links", "Quads", "Best ms", "Growth");
+        System.out.println("-----------------------------------------");
+        double[] ms = new double[doublings + 1];
+        for (int d = 0; d <= doublings; d++) {
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r < runs; r++) {
+                best = Math.min(best, eliminate(programs[d], links << d));
+            }
+            ms[d] = best / 1e6;
+            System.out.printf("%-8d | %8d | %10.2f | %8s%n", links << d, programs[d].size(), ms[d],
+                    (d > 0) ? String.format("%.2fx", ms[d] / ms[d - 1]) : "-");
+        }
+        double exponent = Math.log(ms[doublings] / ms[0]) / Math.log(1 << doublings);
+        System.out.printf("Growth exponent: %.2f%n", exponent);
+        if (exponent > MAX_EXPONENT) {
+            throw new IllegalStateException(String.format(
+                    "Dead code elimination scales superlinearly: time grows as size^%.2f.", exponent));
+        }
+    }
+
+    /**
+     * Runs the pass on a copy of {@code code}, built by {@link #program}
+     * with {@code links} links, and returns how long it took.
+     */
+    private static long eliminate(IrProgram code, int links) {
+        IrProgram copy = IrProgram.fromQuads(code.toQuads());
+        System.gc();
+        long start = System.nanoTime();
+        new DeadCodeEliminator().eliminateDeadCode(copy);
+        long time = System.nanoTime() - start;
+        if (copy.size() != 3 * links + 2) {
+            throw new IllegalStateException("Dead chain not removed: " + copy.size() + " quads left.");
+        }
+        return time;
+    }
+
+    /**
+     * {@code links} dead copies, each followed by {@code if (c) { c = c; }}.
+     * Only the branches survive: an IFZ, {@code c = c} and a LABEL per
+     * link, plus the read and the print.
+     */
+    static String program(int links) {
+        StringBuilder sb = new StringBuilder("int c;\n");
+        for (int i = 0; i <= links; i++) {
+            sb.append("int v").append(i).append(";\n");
+        }
+        sb.append("read(c);\n");
+        for (int i = 1; i <= links; i++) {
+            sb.append("v").append(i).append(" = v").append(i - 1).append(";\n");
+            sb.append("if (c) { c = c; }\n");
+        }
+        sb.append("print(c);\n");
+        return sb.toString();
+    }
+}
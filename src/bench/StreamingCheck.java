@@ -0,0 +1,66 @@
+package bench;
+
+import compiler.CompilationResult;
+import compiler.Compiler;
+import compiler.StreamingCompiler;
+import vm.StackVM;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs programs compiled one statement at a time by {@link StreamingCompiler}
+ * and compiled whole by {@link Compiler}, and checks that they print the same
+ * values. Each case is a regression: streaming mode optimizes without seeing
+ * the rest of the program.
+ *
+ * Usage: java bench.StreamingCheck
+ */
+public class StreamingCheck {
+
+    private static final String[] PROGRAMS = {
+            // A variable named like a temp, read again in a later statement
+            "int t7;\n" +
+                    "{ t7 = 5; print(t7); }\n" +
+                    "print(t7);\n",
+            // Temps and variables alive across statements and loops
+            "int i;\n" +
+                    "int s;\n" +
+                    "while (i < 5) { s = s + i + i - 1; i = i + 1; }\n" +
+                    "print(s);\n" +
+                    "{ int i; i = s + 1; print(i); }\n" +
+                    "print(i);\n",
+    };
+
+    public static void main(String[] args) throws IOException {
+        int failed = 0;
+        for (int p = 0; p < PROGRAMS.length; p++) {
+            String source = PROGRAMS[p];
+            CompilationResult whole = new Compiler().compile(source);
+            if (!whole.succeeded()) {
+                throw new IllegalStateException("Case " + p + " does not compile: " + whole.errors());
+            }
+            StringWriter streamed = new StringWriter();
+            if (!new StreamingCompiler().compile(source, streamed)) {
+                throw new IllegalStateException("Case " + p + " does not compile in streaming mode.");
+            }
+            List<Integer> expected = run(whole.assembly());
+            List<Integer> actual = run(Arrays.asList(streamed.toString().split("\n")));
+            if (!expected.equals(actual)) {
+                System.out.println("case " + p + ": expected " + expected + ", streaming printed " + actual);
+                failed++;
+            }
+        }
+        System.out.println(PROGRAMS.length + " cases, " + failed + " failed");
+        if (failed > 0) System.exit(1);
+    }
+
+    private static List<Integer> run(List<String> assembly) {
+        List<Integer> output = new ArrayList<>();
+        new StackVM(assembly).run(() -> 0, output::add);
+        return output;
+    }
+}
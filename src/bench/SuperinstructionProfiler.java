@@ -0,0 +1,144 @@
+package bench;
+
+import compiler.CompilationResult;
+import compiler.Compiler;
+import vm.Opcode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks superinstructions for the stack VM from the static frequency of
+ * instruction sequences in a corpus of TinyLang programs.
+ *
+ * Each program is compiled as usual and its assembly cut into straight
+ * runs: a label starts a new run and a jump ends one, since a fused
+ * instruction cannot be entered in the middle and may only branch at its
+ * end. Sequences of 2 to {@link #MAX_LENGTH} instructions are counted, and
+ * the one that would save the most dispatches (count times length - 1) is
+ * picked. Its occurrences are then replaced so later picks only count what
+ * is left, and this repeats. The table in {@link Opcode} was chosen this way.
+ *
+ * Usage: java bench.SuperinstructionProfiler [-n count] file.tl...
+ */
+public class SuperinstructionProfiler {
+
+    public static final int MAX_LENGTH = 4;
+
+    private static final int FUSED = -1; // stands for an already picked sequence
+
+    public static void main(String[] args) throws IOException {
+        int picks = 8;
+        List<int[]> runs = new ArrayList<>();
+        long total = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-n")) {
+                picks = Integer.parseInt(args[++i]);
+                continue;
+            }
+            CompilationResult result = new Compiler().compile(Files.readString(Path.of(args[i])));
+            if (!result.succeeded()) {
+                System.err.println(args[i] + ": does not compile, skipped");
+                continue;
+            }
+            total += addRuns(result.assembly(), runs);
+        }
+
+        System.out.printf("%d instructions in %d runs%n", total, runs.size());
+        for (int p = 0; p < picks; p++) {
+            Map<String, Integer> counts = new HashMap<>();
+            for (int[] run : runs) {
+                for (int n = 2; n <= MAX_LENGTH; n++) {
+                    for (int s = 0; s + n <= run.length; s++) {
+                        if (canFuse(run, s, n)) counts.merge(key(run, s, n), 1, Integer::sum);
+                    }
+                }
+            }
+            String best = null;
+            long bestSaving = 0;
+            for (Map.Entry<String, Integer> e : counts.entrySet()) {
+                long saving = (long) e.getValue() * (e.getKey().split(" ").length - 1);
+                if (saving > bestSaving) {
+                    best = e.getKey();
+                    bestSaving = saving;
+                }
+            }
+            if (best == null) break;
+            System.out.printf("%-28s %8d occurrences, %8d dispatches saved%n",
+                    best, counts.get(best), bestSaving);
+            replace(runs, best);
+        }
+    }
+
+    /**
+     * Appends the straight runs of {@code assembly} as opcode arrays.
+     * Returns the number of instructions.
+     */
+    private static int addRuns(List<String> assembly, List<int[]> runs) {
+        List<Integer> run = new ArrayList<>();
+        int count = 0;
+        for (String line : assembly) {
+            String mnemonic = line.trim().split("\\s+")[0];
+            if (mnemonic.isEmpty() || mnemonic.startsWith(";")) continue;
+            if (mnemonic.equals("LABEL")) {
+                flush(run, runs);
+                continue;
+            }
+            int op = Opcode.fromMnemonic(mnemonic);
+            run.add(op);
+            count++;
+            if (op == Opcode.JMP || op == Opcode.JZ || op == Opcode.JNZ) flush(run, runs);
+        }
+        flush(run, runs);
+        return count;
+    }
+
+    private static void flush(List<Integer> run, List<int[]> runs) {
+        if (run.size() >= 2) runs.add(run.stream().mapToInt(Integer::intValue).toArray());
+        run.clear();
+    }
+
+    private static boolean canFuse(int[] run, int start, int length) {
+        for (int k = start; k < start + length; k++) {
+            if (run[k] == FUSED) return false;
+        }
+        return true;
+    }
+
+    private static String key(int[] run, int start, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int k = start; k < start + length; k++) {
+            if (k > start) sb.append(' ');
+            sb.append(Opcode.mnemonic(run[k]));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Replaces each occurrence of {@code sequence}, left to right, with a
+     * single FUSED entry.
+     */
+    private static void replace(List<int[]> runs, String sequence) {
+        int length = sequence.split(" ").length;
+        for (int r = 0; r < runs.size(); r++) {
+            int[] run = runs.get(r);
+            int[] out = new int[run.length];
+            int n = 0;
+            for (int s = 0; s < run.length; ) {
+                if (s + length <= run.length && canFuse(run, s, length) && key(run, s, length).equals(sequence)) {
+                    out[n++] = FUSED;
+                    s += length;
+                } else {
+                    out[n++] = run[s++];
+                }
+            }
+            runs.set(r, Arrays.copyOf(out, n));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package bench;
+
+import icg.Quadruple;
+import icg.TacGenerator;
+import interp.AstCompiler;
+import interp.CompiledProgram;
+import lexer.Lexer;
+import optimizer.Optimizer;
+import parser.Parser;
+import parser.ast.Stmt;
+import semantic.Resolution;
+import semantic.SemanticAnalyzer;
+import target.JvmCodeGenerator;
+import target.JvmRuntime;
+import target.PeepholeOptimizer;
+import target.TargetCodeGeneration;
+import vm.RegisterCompiler;
+import vm.RegisterProgram;
+import vm.RegisterVM;
+import vm.StackVM;
+import vm.TieredVM;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Compares the execution engines on a loop-heavy TinyLang program.
+ *
+ * Usage: java bench.VmBenchmark [outerIterations] [runs]
+ */
+public class VmBenchmark {
+
+    private static final IntSupplier NO_INPUT = () -> 0;
+
+    public static void main(String[] args) {
+        int outer = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        int runs = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+        String source = program(outer);
+        List<Stmt> ast = new Parser(new Lexer(source).scanTokens()).parse();
+        SemanticAnalyzer analyzer = new SemanticAnalyzer();
+        if (!analyzer.analyze(ast)) {
+            throw new IllegalStateException("Benchmark program failed semantic analysis.");
+        }
+        Resolution resolution = analyzer.getResolution();
+        List<Quadruple> quads = new Optimizer().optimize(new TacGenerator(resolution).generate(ast));
+        List<String> assembly = new PeepholeOptimizer().optimize(new TargetCodeGeneration().generate(quads));
+
+        StackVM stackVm = new StackVM(assembly);
+        RegisterProgram registerProgram = new RegisterCompiler().compile(quads);
+        RegisterVM registerVm = new RegisterVM(registerProgram);
+        TieredVM tieredVm = new TieredVM(registerProgram);
+        CompiledProgram astProgram = new AstCompiler(resolution).compile(ast);
+        Runnable jvmClass = JvmCodeGenerator.load("BenchProgram",
+                new JvmCodeGenerator().generate(quads, "BenchProgram"));
+
+        System.out.printf("%-10s | %12s | %14s | %10s%n", "Engine", "Best ms", "Dispatches", "Result");
+        System.out.println("---------------------------------------------------------");
+        report("stack", runs, output -> stackVm.run(NO_INPUT, output), stackVm::getExecutedCount);
+        report("register", runs, output -> registerVm.run(NO_INPUT, output), registerVm::getExecutedCount);
+        report("tiered", runs, output -> tieredVm.run(NO_INPUT, output), tieredVm::getInterpretedCount);
+        report("ast", runs, output -> astProgram.run(NO_INPUT, output), null);
+        report("jvm", runs, output -> {
+            JvmRuntime.bind(NO_INPUT, output);
+            jvmClass.run();
+        }, null);
+    }
+
+    /**
+     * Nested counting loops. Every variable is printed so the optimizer
+     * keeps all of the work.
+     */
+    static String program(int outer) {
+        return "int i;\n" +
+                "int j;\n" +
+                "int s;\n" +
+                "while (i < " + outer + ") {\n" +
+                "  j = 0;\n" +
+                "  while (j < 1000) {\n" +
+                "    s = s + i + j;\n" +
+                "    j = j + 1;\n" +
+                "  }\n" +
+                "  i = i + 1;\n" +
+                "}\n" +
+                "print(i);\n" +
+                "print(j);\n" +
+                "print(s);\n";
+    }
+
+    private interface Engine {
+        void run(IntConsumer output);
+    }
+
+    private interface Counter {
+        long executed();
+    }
+
+    private static void report(String name, int runs, Engine engine, Counter counter) {
+        int[] result = new int[1];
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            engine.run(value -> result[0] = value);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        String dispatches = (counter != null) ? String.valueOf(counter.executed()) : "-";
+        System.out.printf("%-10s | %12.2f | %14s | %10d%n", name, best / 1e6, dispatches, result[0]);
+    }
+}
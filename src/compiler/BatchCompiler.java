@@ -0,0 +1,222 @@
+package compiler;
+
+import lexer.MappedSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles many TinyLang files in parallel on a work-stealing pool.
+ *
+ * Usage: java compiler.BatchCompiler [--out DIR] [--threads N]
+ *            [--cache DIR [--cache-size MB]] (FILE | DIR)...
+ *
+ * Directories are searched recursively for *.tl files. Each FILE.tl is
+ * compiled to FILE.asm next to it, or under --out (keeping the path
+ * relative to the directory it was found in). Errors are reported per
+ * file, followed by aggregate throughput.
+ *
+ * With --cache, results are looked up in a {@link CompilationCache} first
+ * and a hit goes straight to writing the output.
+ */
+public class BatchCompiler {
+
+    public static final String SOURCE_EXTENSION = ".tl";
+    public static final String OUTPUT_EXTENSION = ".asm";
+
+    // Small files are cheaper to read than to map
+    private static final long MAP_THRESHOLD = 1 << 20;
+
+    private static final long DEFAULT_CACHE_MB = 256;
+
+    /**
+     * One input file and the root it was found under (itself for plain files).
+     */
+    private record Source(Path file, Path root) {
+    }
+
+    private record Outcome(Source source, long lines, List<String> errors) {
+    }
+
+    private final Compiler compiler = new Compiler();
+    private final Path outputDir;
+    private final int threads;
+    private final CompilationCache cache;
+    private final AtomicInteger cacheHits = new AtomicInteger();
+
+    public BatchCompiler(Path outputDir, int threads) {
+        this(outputDir, threads, null);
+    }
+
+    /**
+     * @param cache where to look up and store results, or null to always compile
+     */
+    public BatchCompiler(Path outputDir, int threads, CompilationCache cache) {
+        this.outputDir = outputDir;
+        this.threads = threads;
+        this.cache = cache;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path out = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path cacheDir = null;
+        long cacheMb = DEFAULT_CACHE_MB;
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out" -> out = Paths.get(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--cache" -> cacheDir = Paths.get(args[++i]);
+                case "--cache-size" -> cacheMb = Long.parseLong(args[++i]);
+                default -> inputs.add(Paths.get(args[i]));
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: java compiler.BatchCompiler [--out DIR] [--threads N]"
+                    + " [--cache DIR [--cache-size MB]] (FILE | DIR)...");
+            System.exit(64);
+        }
+
+        CompilationCache cache = (cacheDir == null) ? null : new CompilationCache(cacheDir, cacheMb << 20);
+        boolean ok = new BatchCompiler(out, threads, cache).run(inputs);
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * Compiles every input and prints a summary. Returns true if all succeeded.
+     */
+    public boolean run(List<Path> inputs) throws IOException, InterruptedException {
+        List<Source> sources = collect(inputs);
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<Outcome> outcomes;
+        try {
+            outcomes = pool.submit(() -> sources.parallelStream()
+                    .map(this::compileFile)
+                    .collect(Collectors.toList())).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException io) throw io.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(cause);
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long lines = 0;
+        int failed = 0;
+        for (Outcome outcome : outcomes) {
+            lines += outcome.lines;
+            if (!outcome.errors.isEmpty()) {
+                failed++;
+                for (String error : outcome.errors) {
+                    System.err.println(outcome.source.file + ": " + error);
+                }
+            }
+        }
+
+        System.out.printf("Compiled %d files (%d failed), %d lines in %.3f s on %d threads%n",
+                outcomes.size(), failed, lines, seconds, threads);
+        System.out.printf("Throughput: %.1f files/sec, %.1f lines/sec%n",
+                outcomes.size() / seconds, lines / seconds);
+        if (cache != null) {
+            System.out.printf("Cache: %d hits, %d misses, %d KB on disk%n",
+                    cacheHits.get(), outcomes.size() - cacheHits.get(), cache.sizeInBytes() >> 10);
+        }
+        return failed == 0;
+    }
+
+    private Outcome compileFile(Source source) {
+        try {
+            CharSequence text = read(source.file);
+            CompilationResult result = compile(text);
+            if (result.succeeded()) {
+                Path target = outputPath(source);
+                if (target.getParent() != null) {
+                    Files.createDirectories(target.getParent());
+                }
+                Files.write(target, result.assembly(), StandardCharsets.UTF_8);
+            }
+            return new Outcome(source, countLines(text), result.errors());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CompilationResult compile(CharSequence text) {
+        if (cache == null) {
+            return compiler.compile(text);
+        }
+        String key = CompilationCache.key(text, compiler.configuration());
+        Optional<CompilationResult> cached = cache.get(key);
+        if (cached.isPresent()) {
+            cacheHits.incrementAndGet();
+            return cached.get();
+        }
+        CompilationResult result = compiler.compile(text);
+        cache.put(key, result);
+        return result;
+    }
+
+    private Path outputPath(Source source) {
+        String name = source.file.getFileName().toString();
+        if (name.endsWith(SOURCE_EXTENSION)) {
+            name = name.substring(0, name.length() - SOURCE_EXTENSION.length());
+        }
+        name += OUTPUT_EXTENSION;
+        if (outputDir == null) {
+            return source.file.resolveSibling(name);
+        }
+        Path relative = source.root.equals(source.file)
+                ? Paths.get(name)
+                : source.root.relativize(source.file).resolveSibling(name);
+        return outputDir.resolve(relative);
+    }
+
+    private static List<Source> collect(List<Path> inputs) throws IOException {
+        List<Source> sources = new ArrayList<>();
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                try (Stream<Path> walk = Files.walk(input)) {
+                    walk.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(SOURCE_EXTENSION))
+                            .sorted()
+                            .forEach(p -> sources.add(new Source(p, input)));
+                }
+            } else {
+                sources.add(new Source(input, input));
+            }
+        }
+        return sources;
+    }
+
+    private static CharSequence read(Path file) throws IOException {
+        if (Files.size(file) >= MAP_THRESHOLD) {
+            return MappedSource.open(file);
+        }
+        return new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+    }
+
+    private static long countLines(CharSequence text) {
+        long lines = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            if (text.charAt(i) == '\n') lines++;
+        }
+        if (text.length() > 0 && text.charAt(text.length() - 1) != '\n') lines++;
+        return lines;
+    }
+}
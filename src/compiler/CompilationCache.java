@@ -0,0 +1,267 @@
+package compiler;
+
+import icg.Quadruple;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A persistent, content-addressed cache of successful compilations.
+ *
+ * Entries are keyed by the SHA-256 of the compiler configuration plus the
+ * source text, so a changed source or compiler simply misses. Each entry is
+ * one file holding the optimized quads and target assembly in a compact
+ * binary form: a table of distinct strings followed by indices into it.
+ * The directory is kept under a size limit by evicting the least recently
+ * used entries, using file modification time as the access stamp.
+ *
+ * Safe for concurrent use by several threads (and processes): entries are
+ * written to a temp file and atomically moved into place.
+ */
+public class CompilationCache {
+
+    private static final int MAGIC = 0x544C4343; // "TLCC"
+    private static final int FORMAT = 1;
+    private static final String SUFFIX = ".tlc";
+
+    private final Path dir;
+    private final long maxBytes;
+    private final AtomicLong size = new AtomicLong();
+
+    public CompilationCache(Path dir, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+        try (Stream<Path> entries = Files.list(dir)) {
+            size.set(entries.filter(p -> p.toString().endsWith(SUFFIX)).mapToLong(CompilationCache::sizeOf).sum());
+        }
+    }
+
+    /**
+     * The cache key for a source compiled under the given configuration.
+     */
+    public static String key(CharSequence source, String configuration) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(configuration.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        byte[] chunk = new byte[8192];
+        int n = source.length();
+        for (int i = 0; i < n; i += chunk.length) {
+            int len = Math.min(chunk.length, n - i);
+            for (int j = 0; j < len; j++) {
+                chunk[j] = (byte) source.charAt(i + j);
+            }
+            digest.update(chunk, 0, len);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public Optional<CompilationResult> get(String key) {
+        Path file = entry(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            CompilationResult result = readEntry(in);
+            // Mark as recently used
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(result);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            // Corrupt or half-evicted entry: treat as a miss
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores a successful result. Failed compilations are not cached.
+     */
+    public void put(String key, CompilationResult result) {
+        if (!result.succeeded()) return;
+        Path file = entry(key);
+        try {
+            Path temp = Files.createTempFile(dir, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                writeEntry(out, result);
+            }
+            long added = sizeOf(temp);
+            long replaced = Files.exists(file) ? sizeOf(file) : 0;
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (size.addAndGet(added - replaced) > maxBytes) {
+                evict();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long sizeInBytes() {
+        return size.get();
+    }
+
+    /**
+     * Deletes least recently used entries until the cache is back under 90%
+     * of its limit, so eviction does not run on every put.
+     */
+    private synchronized void evict() throws IOException {
+        if (size.get() <= maxBytes) return;
+        List<Path> entries;
+        try (Stream<Path> list = Files.list(dir)) {
+            entries = new ArrayList<>(list.filter(p -> p.toString().endsWith(SUFFIX)).toList());
+        }
+        Map<Path, FileTime> stamps = new HashMap<>();
+        long total = 0;
+        for (Path p : entries) {
+            stamps.put(p, lastModified(p));
+            total += sizeOf(p);
+        }
+        entries.sort(Comparator.comparing(stamps::get));
+
+        long target = maxBytes - maxBytes / 10;
+        for (Path p : entries) {
+            if (total <= target) break;
+            long bytes = sizeOf(p);
+            if (Files.deleteIfExists(p)) {
+                total -= bytes;
+            }
+        }
+        size.set(total);
+    }
+
+    // ---- entry format ----
+
+    private static void writeEntry(DataOutputStream out, CompilationResult result) throws IOException {
+        Map<String, Integer> index = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int[] quadRefs = new int[result.optimizedQuads().size() * 4];
+        int k = 0;
+        for (Quadruple q : result.optimizedQuads()) {
+            quadRefs[k++] = intern(index, strings, q.op());
+            quadRefs[k++] = intern(index, strings, q.arg1());
+            quadRefs[k++] = intern(index, strings, q.arg2());
+            quadRefs[k++] = intern(index, strings, q.result());
+        }
+        int[] asmRefs = new int[result.assembly().size()];
+        for (int i = 0; i < asmRefs.length; i++) {
+            asmRefs[i] = intern(index, strings, result.assembly().get(i));
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            out.writeUTF(s);
+        }
+        out.writeInt(result.optimizedQuads().size());
+        for (int ref : quadRefs) {
+            writeVarInt(out, ref + 1); // 0 encodes null
+        }
+        out.writeInt(asmRefs.length);
+        for (int ref : asmRefs) {
+            writeVarInt(out, ref + 1);
+        }
+    }
+
+    private static CompilationResult readEntry(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+            throw new IOException("Not a cache entry.");
+        }
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        int quadCount = in.readInt();
+        List<Quadruple> quads = new ArrayList<>(quadCount);
+        for (int i = 0; i < quadCount; i++) {
+            quads.add(new Quadruple(string(strings, in), string(strings, in), string(strings, in), string(strings, in)));
+        }
+        int asmCount = in.readInt();
+        List<String> assembly = new ArrayList<>(asmCount);
+        for (int i = 0; i < asmCount; i++) {
+            assembly.add(string(strings, in));
+        }
+        return new CompilationResult(List.of(), quads, assembly);
+    }
+
+    private static int intern(Map<String, Integer> index, List<String> strings, String s) {
+        if (s == null) return -1;
+        return index.computeIfAbsent(s, key -> {
+            strings.add(key);
+            return strings.size() - 1;
+        });
+    }
+
+    private static String string(String[] strings, DataInputStream in) throws IOException {
+        int ref = readVarInt(in);
+        return (ref == 0) ? null : strings[ref - 1];
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+    // helpers
+
+    private Path entry(String key) {
+        return dir.resolve(key + SUFFIX);
+    }
+
+    private static long sizeOf(Path p) {
+        try {
+            return Files.size(p);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package compiler;
+
+import icg.Quadruple;
+
+import java.util.List;
+
+/**
+ * The outcome of compiling one source: either the optimized TAC and target
+ * assembly, or the errors that stopped compilation.
+ */
+public record CompilationResult(List<String> errors, List<Quadruple> optimizedQuads, List<String> assembly) {
+
+    public static CompilationResult failure(List<String> errors) {
+        return new CompilationResult(List.copyOf(errors), List.of(), List.of());
+    }
+
+    public boolean succeeded() {
+        return errors.isEmpty();
+    }
+}
@@ -0,0 +1,69 @@
+package compiler;
+
+import icg.Quadruple;
+import icg.TacGenerator;
+import ir.IrProgram;
+import lexer.Lexer;
+import optimizer.Optimizer;
+import optimizer.Profile;
+import parser.Parser;
+import parser.ast.Stmt;
+import semantic.SemanticAnalyzer;
+import target.PeepholeOptimizer;
+import target.TargetCodeGeneration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The whole pipeline for one source, without any console output:
+ * lexer -> parser -> semantic analysis -> TAC -> optimizer -> target code.
+ *
+ * Every call creates fresh phase objects, so per-compilation state such as
+ * the temp and label counters in {@link TacGenerator} is never shared and
+ * one Compiler can be used from many threads at once.
+ */
+public class Compiler {
+
+    /**
+     * Bump whenever a change to any phase can alter the generated code.
+     */
+    public static final String VERSION = "12";
+
+    /**
+     * Identifies everything besides the source that determines the output.
+     */
+    public String configuration() {
+        return "tinylang-" + VERSION + ";optimizer=" + new Optimizer().configuration();
+    }
+
+    public CompilationResult compile(CharSequence source) {
+        return compile(source, Profile.EMPTY);
+    }
+
+    /**
+     * Compiles with a profile recorded by a {@link optimizer.Profiler} run of the same
+     * source's TAC.
+     */
+    public CompilationResult compile(CharSequence source, Profile profile) {
+        List<String> errors = new ArrayList<>();
+        List<Stmt> ast;
+        try {
+            ast = new Parser(new Lexer(source).scanBuffer()).parse();
+        } catch (RuntimeException e) {
+            // Parse errors carry their own "[Line n] Error at ..." message
+            errors.add(e.getMessage());
+            return CompilationResult.failure(errors);
+        }
+
+        SemanticAnalyzer analyzer = new SemanticAnalyzer(errors::add);
+        if (!analyzer.analyze(ast)) {
+            return CompilationResult.failure(errors);
+        }
+
+        List<Quadruple> quads = new TacGenerator(analyzer.getResolution()).generate(ast);
+        IrProgram optimized = new Optimizer().optimize(IrProgram.fromQuads(quads), profile);
+        List<String> assembly = new PeepholeOptimizer().optimize(new TargetCodeGeneration().generate(optimized));
+        return new CompilationResult(List.of(), optimized.toQuads(), assembly);
+    }
+}
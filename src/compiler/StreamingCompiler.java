@@ -0,0 +1,115 @@
+package compiler;
+
+import icg.Quadruple;
+import icg.TacGenerator;
+import lexer.Lexer;
+import lexer.MappedSource;
+import optimizer.ConstantFolder;
+import parser.Parser;
+import parser.ast.Stmt;
+import semantic.SemanticAnalyzer;
+import target.PeepholeOptimizer;
+import target.TargetCodeGeneration;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Compiles a program one top-level statement at a time: the parser pulls
+ * just the tokens it needs from the lexer, and each statement is analyzed,
+ * lowered to TAC, folded and turned into target assembly before the next
+ * one is parsed. Peak memory is bounded by the largest top-level statement
+ * rather than by the size of the program.
+ *
+ * Dead code elimination needs the whole program, so this mode only applies
+ * constant folding, plus the peephole pass on each statement's assembly.
+ * Output is written as it is produced; if compilation fails part-way,
+ * whatever was written before the error should be discarded.
+ */
+public class StreamingCompiler {
+
+    private long statements;
+    private long instructions;
+
+    /**
+     * @return true if the whole program compiled without syntax or semantic
+     *         errors, which are reported on standard error
+     */
+    public boolean compile(CharSequence source, Writer out) throws IOException {
+        statements = 0;
+        instructions = 0;
+
+        Parser parser = new Parser(new Lexer(source));
+        SemanticAnalyzer analyzer = new SemanticAnalyzer();
+        TacGenerator tacGen = new TacGenerator(analyzer.getResolution());
+        ConstantFolder folder = new ConstantFolder();
+        TargetCodeGeneration targetGen = new TargetCodeGeneration();
+        PeepholeOptimizer peephole = new PeepholeOptimizer();
+
+        while (true) {
+            Stmt statement;
+            try {
+                if (!parser.hasNext()) break;
+                statement = parser.next();
+            } catch (RuntimeException e) {
+                // Parse errors carry their own "[Line n] Error at ..." message
+                System.err.println(e.getMessage());
+                return false;
+            }
+            statements++;
+            if (!analyzer.analyzeStatement(statement)) {
+                return false;
+            }
+            List<Quadruple> quads = folder.foldConstants(tacGen.generateStatement(statement));
+            analyzer.getResolution().forgetNodes();
+            for (String line : peephole.optimize(targetGen.generate(quads))) {
+                out.write(line);
+                out.write('\n');
+                instructions++;
+            }
+        }
+        out.flush();
+        return true;
+    }
+
+    public long getStatementCount() {
+        return statements;
+    }
+
+    public long getInstructionCount() {
+        return instructions;
+    }
+
+    /**
+     * Usage: java compiler.StreamingCompiler source.tl [output.asm]
+     * Writes to standard output when no output file is given.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java compiler.StreamingCompiler <source> [output]");
+            System.exit(64);
+        }
+        CharSequence source = MappedSource.open(Paths.get(args[0]));
+        Writer out = (args.length > 1)
+                ? Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+
+        StreamingCompiler compiler = new StreamingCompiler();
+        boolean ok;
+        try (out) {
+            ok = compiler.compile(source, out);
+        }
+        if (!ok) {
+            System.err.println("Compilation failed.");
+            System.exit(1);
+        }
+        System.err.println("Compiled " + compiler.getStatementCount() + " statements into "
+                + compiler.getInstructionCount() + " instructions.");
+    }
+}
@@ -13,8 +13,19 @@ public record Quadruple(String op, String arg1, String arg2, String result) {
         String arg2Str = (arg2 == null) ? "---" : arg2;
         String resultStr = (result == null) ? "---" : result;
 
-        // "%-10s" means "left-aligned, 10-character wide string"
-        return String.format("%-10s | %-10s | %-10s | %-10s",
-                op, arg1Str, arg2Str, resultStr);
+        // Each column is left-aligned and padded to 10 characters, like "%-10s"
+        StringBuilder sb = new StringBuilder(64);
+        pad(sb, op).append(" | ");
+        pad(sb, arg1Str).append(" | ");
+        pad(sb, arg2Str).append(" | ");
+        return pad(sb, resultStr).toString();
+    }
+
+    private static StringBuilder pad(StringBuilder sb, String s) {
+        sb.append(s);
+        for (int i = s.length(); i < 10; i++) {
+            sb.append(' ');
+        }
+        return sb;
     }
 }
\ No newline at end of file
@@ -2,18 +2,38 @@ package icg;
 
 import lexer.Token;
 import parser.ast.*;
+import semantic.Resolution;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Walks the semantically-checked AST and generates Three-Address Code (TAC)
  * in the form of Quadruples.
+ *
+ * Given the analyzer's {@link Resolution}, each variable is named after the
+ * declaration it resolves to, so shadowed variables get their own names.
+ * Without one, variables are named as written.
  */
 public class TacGenerator implements StmtVisitor<Void>, ExprVisitor<String> {
 
+    /**
+     * Starts every temp's name. No identifier can start with '$', so a
+     * temp never shares a name with a variable.
+     */
+    public static final String TEMP_PREFIX = "$t";
+
     private final List<Quadruple> quads = new ArrayList<>();
     private int tempCounter = 0;
     private int labelCounter = 0;
+    private final Resolution resolution;
+
+    public TacGenerator() {
+        this(null);
+    }
+
+    public TacGenerator(Resolution resolution) {
+        this.resolution = resolution;
+    }
 
     /**
      * Generates TAC for a list of statements (the whole program).
@@ -30,12 +50,23 @@ public class TacGenerator implements StmtVisitor<Void>, ExprVisitor<String> {
         return quads;
     }
 
+    /**
+     * Generates TAC for one more top-level statement. Temp and label
+     * numbering continue from earlier calls, so the pieces can be
+     * concatenated into one program.
+     */
+    public List<Quadruple> generateStatement(Stmt statement) {
+        quads.clear();
+        statement.accept(this);
+        return new ArrayList<>(quads);
+    }
+
 
     /**
-     * Creates a new, unique temporary variable name (e.g., "t0", "t1").
+     * Creates a new, unique temporary variable name (e.g., "$t0", "$t1").
      */
     private String newTemp() {
-        return "t" + tempCounter++;
+        return TEMP_PREFIX + tempCounter++;
     }
 
     /**
@@ -78,14 +109,14 @@ public class TacGenerator implements StmtVisitor<Void>, ExprVisitor<String> {
         String valueAddr = stmt.value.accept(this);
 
         // 2. Emit the final assignment.
-        emit("=", valueAddr, null, stmt.name.lexeme);
+        emit("=", valueAddr, null, resolution != null ? resolution.name(resolution.slot(stmt)) : stmt.name.lexeme);
         return null;
     }
 
     @Override
     public Void visitIfStmt(IfStmt stmt) {
         String elseLabel = newLabel(); // e.g., L0
-        String endLabel = newLabel();  // e.g., L1
+        String endLabel = (stmt.elseBranch != null) ? newLabel() : elseLabel; // e.g., L1
 
         // 1. Visit the condition
         String condAddr = stmt.condition.accept(this);
@@ -97,14 +128,15 @@ public class TacGenerator implements StmtVisitor<Void>, ExprVisitor<String> {
         // 3. Visit the "then" branch
         stmt.thenBranch.accept(this);
 
-        // 4. Emit the unconditional jump to skip the 'else' block
-        emit("GOTO", endLabel, null, null);
+        // Without an 'else' branch the false path just falls to the end
+        if (stmt.elseBranch != null) {
+            // 4. Emit the unconditional jump to skip the 'else' block
+            emit("GOTO", endLabel, null, null);
 
-        // 5. Emit the 'else' label
-        emit("LABEL", elseLabel, null, null);
+            // 5. Emit the 'else' label
+            emit("LABEL", elseLabel, null, null);
 
-        // 6. Visit the "else" branch
-        if (stmt.elseBranch != null) {
+            // 6. Visit the "else" branch
             stmt.elseBranch.accept(this);
         }
 
@@ -144,14 +176,14 @@ public class TacGenerator implements StmtVisitor<Void>, ExprVisitor<String> {
     @Override
     public Void visitPrintStmt(PrintStmt stmt) {
         // We'll create a "PRINT" op for our TAC.
-        emit("PRINT", stmt.name.lexeme, null, null);
+        emit("PRINT", resolution != null ? resolution.name(resolution.slot(stmt)) : stmt.name.lexeme, null, null);
         return null;
     }
 
     @Override
     public Void visitReadStmt(ReadStmt stmt) {
         // We'll create a "READ" op for our TAC.
-        emit("READ", stmt.name.lexeme, null, null);
+        emit("READ", resolution != null ? resolution.name(resolution.slot(stmt)) : stmt.name.lexeme, null, null);
         return null;
     }
 
@@ -162,7 +194,7 @@ public class TacGenerator implements StmtVisitor<Void>, ExprVisitor<String> {
         String rightAddr = expr.right.accept(this);
 
         // 2. Create a new temporary to hold the result
-        String resultAddr = newTemp(); // e.g., "t0"
+        String resultAddr = newTemp(); // e.g., "$t0"
 
         // 3. Emit the instruction
         emit(expr.operator.lexeme, leftAddr, rightAddr, resultAddr);
@@ -179,8 +211,8 @@ public class TacGenerator implements StmtVisitor<Void>, ExprVisitor<String> {
 
     @Override
     public String visitVariableExpr(VariableExpr expr) {
-        // The "address" of a variable is just its name.
-        return expr.name.lexeme;
+        // The "address" of a variable is just its (resolved) name.
+        return resolution != null ? resolution.name(resolution.slot(expr)) : expr.name.lexeme;
     }
 
     @Override
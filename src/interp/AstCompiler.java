@@ -0,0 +1,154 @@
+package interp;
+
+import parser.ast.*;
+import semantic.Resolution;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles a semantically-checked AST straight into executable nodes,
+ * skipping TAC entirely. Variables use the frame slots the analyzer's
+ * {@link Resolution} assigned them, and each binary expression picks the most specific node shape its
+ * operands allow (e.g. {@code x + 1} becomes an AddLocalConst).
+ */
+public class AstCompiler implements StmtVisitor<StmtNode>, ExprVisitor<ExprNode> {
+
+    private final Resolution resolution;
+
+    /**
+     * @param resolution from a {@link semantic.SemanticAnalyzer} that accepted the program
+     */
+    public AstCompiler(Resolution resolution) {
+        this.resolution = resolution;
+    }
+
+    public CompiledProgram compile(List<Stmt> statements) {
+        StmtNode body = block(statements);
+        return new CompiledProgram(body, resolution.frameSize());
+    }
+
+    private StmtNode block(List<Stmt> statements) {
+        List<StmtNode> nodes = new ArrayList<>();
+        for (Stmt statement : statements) {
+            StmtNode node = statement.accept(this);
+            if (node != StmtNodes.Empty.INSTANCE) {
+                nodes.add(node);
+            }
+        }
+        if (nodes.isEmpty()) return StmtNodes.Empty.INSTANCE;
+        if (nodes.size() == 1) return nodes.get(0);
+        return new StmtNodes.Block(nodes.toArray(new StmtNode[0]));
+    }
+
+    // --- Statements ---
+
+    @Override
+    public StmtNode visitBlockStmt(BlockStmt stmt) {
+        return block(stmt.statements);
+    }
+
+    @Override
+    public StmtNode visitVarDeclStmt(VarDeclStmt stmt) {
+        // Its slot was assigned during resolution; the frame starts zeroed
+        return StmtNodes.Empty.INSTANCE;
+    }
+
+    @Override
+    public StmtNode visitAssignStmt(AssignStmt stmt) {
+        int slot = resolution.slot(stmt);
+        ExprNode value = stmt.value.accept(this);
+        if (value instanceof ExprNodes.AddLocalConst add && add.slot == slot) {
+            return new StmtNodes.Increment(slot, add.value);
+        }
+        return new StmtNodes.Assign(slot, value);
+    }
+
+    @Override
+    public StmtNode visitIfStmt(IfStmt stmt) {
+        ExprNode condition = stmt.condition.accept(this);
+        StmtNode thenBranch = stmt.thenBranch.accept(this);
+        StmtNode elseBranch = (stmt.elseBranch != null) ? stmt.elseBranch.accept(this) : null;
+        if (elseBranch == StmtNodes.Empty.INSTANCE) {
+            elseBranch = null;
+        }
+        Integer constant = condition.constantValue();
+        if (constant != null) {
+            StmtNode taken = (constant != 0) ? thenBranch : elseBranch;
+            return (taken != null) ? taken : StmtNodes.Empty.INSTANCE;
+        }
+        return new StmtNodes.If(condition, thenBranch, elseBranch);
+    }
+
+    @Override
+    public StmtNode visitWhileStmt(WhileStmt stmt) {
+        ExprNode condition = stmt.condition.accept(this);
+        StmtNode body = stmt.body.accept(this);
+        if (condition instanceof ExprNodes.LessLocalConst less) {
+            return new StmtNodes.WhileLessConst(less.slot, less.value, body);
+        }
+        Integer constant = condition.constantValue();
+        if (constant != null && constant == 0) {
+            return StmtNodes.Empty.INSTANCE;
+        }
+        return new StmtNodes.While(condition, body);
+    }
+
+    @Override
+    public StmtNode visitPrintStmt(PrintStmt stmt) {
+        return new StmtNodes.Print(resolution.slot(stmt));
+    }
+
+    @Override
+    public StmtNode visitReadStmt(ReadStmt stmt) {
+        return new StmtNodes.Read(resolution.slot(stmt));
+    }
+
+    // --- Expressions ---
+
+    @Override
+    public ExprNode visitBinaryExpr(BinaryExpr expr) {
+        ExprNode left = expr.left.accept(this);
+        ExprNode right = expr.right.accept(this);
+        Integer lc = left.constantValue();
+        Integer rc = right.constantValue();
+        int ls = left.localSlot();
+        int rs = right.localSlot();
+
+        switch (expr.operator.lexeme) {
+            case "+":
+                if (lc != null && rc != null) return new ExprNodes.Const(lc + rc);
+                if (ls >= 0 && rc != null) return new ExprNodes.AddLocalConst(ls, rc);
+                if (lc != null && rs >= 0) return new ExprNodes.AddLocalConst(rs, lc);
+                if (ls >= 0 && rs >= 0) return new ExprNodes.AddLocalLocal(ls, rs);
+                return new ExprNodes.Add(left, right);
+            case "-":
+                if (lc != null && rc != null) return new ExprNodes.Const(lc - rc);
+                if (ls >= 0 && rc != null) return new ExprNodes.AddLocalConst(ls, -rc);
+                if (ls >= 0 && rs >= 0) return new ExprNodes.SubLocalLocal(ls, rs);
+                return new ExprNodes.Sub(left, right);
+            case "<":
+                if (lc != null && rc != null) return new ExprNodes.Const(lc < rc ? 1 : 0);
+                if (ls >= 0 && rc != null) return new ExprNodes.LessLocalConst(ls, rc);
+                if (ls >= 0 && rs >= 0) return new ExprNodes.LessLocalLocal(ls, rs);
+                return new ExprNodes.Less(left, right);
+            default:
+                throw new IllegalStateException("Unknown operator '" + expr.operator.lexeme + "'.");
+        }
+    }
+
+    @Override
+    public ExprNode visitLiteralExpr(LiteralExpr expr) {
+        return new ExprNodes.Const((Integer) expr.value);
+    }
+
+    @Override
+    public ExprNode visitVariableExpr(VariableExpr expr) {
+        return new ExprNodes.Local(resolution.slot(expr));
+    }
+
+    @Override
+    public ExprNode visitGroupingExpr(GroupingExpr expr) {
+        return expr.expression.accept(this);
+    }
+}
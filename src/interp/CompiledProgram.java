@@ -0,0 +1,29 @@
+package interp;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * A program compiled by {@link AstCompiler}, ready to run any number of times.
+ */
+public final class CompiledProgram {
+
+    private final StmtNode body;
+    private final int frameSize;
+
+    CompiledProgram(StmtNode body, int frameSize) {
+        this.body = body;
+        this.frameSize = frameSize;
+    }
+
+    public int frameSize() {
+        return frameSize;
+    }
+
+    /**
+     * Runs the program with every variable starting at zero.
+     */
+    public void run(IntSupplier input, IntConsumer output) {
+        body.exec(new int[frameSize], input, output);
+    }
+}
@@ -0,0 +1,24 @@
+package interp;
+
+/**
+ * An executable expression node. Each subclass is final and has a single
+ * shape, so a call site that always sees the same node type stays
+ * monomorphic and the JIT can inline the whole subtree.
+ */
+public abstract class ExprNode {
+    public abstract int eval(int[] frame);
+
+    /**
+     * The value of this node if it is a compile-time constant.
+     */
+    Integer constantValue() {
+        return null;
+    }
+
+    /**
+     * The frame slot this node reads if it is a plain variable, else -1.
+     */
+    int localSlot() {
+        return -1;
+    }
+}
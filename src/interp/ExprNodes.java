@@ -0,0 +1,168 @@
+package interp;
+
+/**
+ * The expression node shapes. The general Add/Sub/Less nodes evaluate two
+ * child nodes; the specialized forms read a slot and/or a constant directly
+ * so the common {@code x + 1} and {@code i < n} need no child calls.
+ */
+final class ExprNodes {
+
+    private ExprNodes() {
+    }
+
+    static final class Const extends ExprNode {
+        private final int value;
+
+        Const(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int eval(int[] frame) {
+            return value;
+        }
+
+        @Override
+        Integer constantValue() {
+            return value;
+        }
+    }
+
+    static final class Local extends ExprNode {
+        private final int slot;
+
+        Local(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public int eval(int[] frame) {
+            return frame[slot];
+        }
+
+        @Override
+        int localSlot() {
+            return slot;
+        }
+    }
+
+    static final class Add extends ExprNode {
+        private final ExprNode left;
+        private final ExprNode right;
+
+        Add(ExprNode left, ExprNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public int eval(int[] frame) {
+            return left.eval(frame) + right.eval(frame);
+        }
+    }
+
+    static final class AddLocalConst extends ExprNode {
+        final int slot;
+        final int value;
+
+        AddLocalConst(int slot, int value) {
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        public int eval(int[] frame) {
+            return frame[slot] + value;
+        }
+    }
+
+    static final class AddLocalLocal extends ExprNode {
+        private final int left;
+        private final int right;
+
+        AddLocalLocal(int left, int right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public int eval(int[] frame) {
+            return frame[left] + frame[right];
+        }
+    }
+
+    static final class Sub extends ExprNode {
+        private final ExprNode left;
+        private final ExprNode right;
+
+        Sub(ExprNode left, ExprNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public int eval(int[] frame) {
+            return left.eval(frame) - right.eval(frame);
+        }
+    }
+
+    static final class SubLocalLocal extends ExprNode {
+        private final int left;
+        private final int right;
+
+        SubLocalLocal(int left, int right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public int eval(int[] frame) {
+            return frame[left] - frame[right];
+        }
+    }
+
+    static final class Less extends ExprNode {
+        private final ExprNode left;
+        private final ExprNode right;
+
+        Less(ExprNode left, ExprNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public int eval(int[] frame) {
+            return (left.eval(frame) < right.eval(frame)) ? 1 : 0;
+        }
+    }
+
+    static final class LessLocalConst extends ExprNode {
+        final int slot;
+        final int value;
+
+        LessLocalConst(int slot, int value) {
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        public int eval(int[] frame) {
+            return (frame[slot] < value) ? 1 : 0;
+        }
+    }
+
+    static final class LessLocalLocal extends ExprNode {
+        private final int left;
+        private final int right;
+
+        LessLocalLocal(int left, int right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public int eval(int[] frame) {
+            return (frame[left] < frame[right]) ? 1 : 0;
+        }
+    }
+}
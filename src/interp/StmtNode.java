@@ -0,0 +1,11 @@
+package interp;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * An executable statement node; see {@link ExprNode}.
+ */
+public abstract class StmtNode {
+    public abstract void exec(int[] frame, IntSupplier input, IntConsumer output);
+}
@@ -0,0 +1,155 @@
+package interp;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * The statement node shapes; see {@link ExprNodes}.
+ */
+final class StmtNodes {
+
+    private StmtNodes() {
+    }
+
+    static final class Block extends StmtNode {
+        private final StmtNode[] body;
+
+        Block(StmtNode[] body) {
+            this.body = body;
+        }
+
+        @Override
+        public void exec(int[] frame, IntSupplier input, IntConsumer output) {
+            for (StmtNode stmt : body) {
+                stmt.exec(frame, input, output);
+            }
+        }
+    }
+
+    static final class Assign extends StmtNode {
+        private final int slot;
+        private final ExprNode value;
+
+        Assign(int slot, ExprNode value) {
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        public void exec(int[] frame, IntSupplier input, IntConsumer output) {
+            frame[slot] = value.eval(frame);
+        }
+    }
+
+    /**
+     * {@code x = x + c} (and {@code x = x - c} with a negated constant).
+     */
+    static final class Increment extends StmtNode {
+        private final int slot;
+        private final int delta;
+
+        Increment(int slot, int delta) {
+            this.slot = slot;
+            this.delta = delta;
+        }
+
+        @Override
+        public void exec(int[] frame, IntSupplier input, IntConsumer output) {
+            frame[slot] += delta;
+        }
+    }
+
+    static final class If extends StmtNode {
+        private final ExprNode condition;
+        private final StmtNode thenBranch;
+        private final StmtNode elseBranch; // may be null
+
+        If(ExprNode condition, StmtNode thenBranch, StmtNode elseBranch) {
+            this.condition = condition;
+            this.thenBranch = thenBranch;
+            this.elseBranch = elseBranch;
+        }
+
+        @Override
+        public void exec(int[] frame, IntSupplier input, IntConsumer output) {
+            if (condition.eval(frame) != 0) {
+                thenBranch.exec(frame, input, output);
+            } else if (elseBranch != null) {
+                elseBranch.exec(frame, input, output);
+            }
+        }
+    }
+
+    static final class While extends StmtNode {
+        private final ExprNode condition;
+        private final StmtNode body;
+
+        While(ExprNode condition, StmtNode body) {
+            this.condition = condition;
+            this.body = body;
+        }
+
+        @Override
+        public void exec(int[] frame, IntSupplier input, IntConsumer output) {
+            while (condition.eval(frame) != 0) {
+                body.exec(frame, input, output);
+            }
+        }
+    }
+
+    /**
+     * {@code while (x < c)}, the usual counting loop, with the test inlined.
+     */
+    static final class WhileLessConst extends StmtNode {
+        private final int slot;
+        private final int limit;
+        private final StmtNode body;
+
+        WhileLessConst(int slot, int limit, StmtNode body) {
+            this.slot = slot;
+            this.limit = limit;
+            this.body = body;
+        }
+
+        @Override
+        public void exec(int[] frame, IntSupplier input, IntConsumer output) {
+            while (frame[slot] < limit) {
+                body.exec(frame, input, output);
+            }
+        }
+    }
+
+    static final class Print extends StmtNode {
+        private final int slot;
+
+        Print(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public void exec(int[] frame, IntSupplier input, IntConsumer output) {
+            output.accept(frame[slot]);
+        }
+    }
+
+    static final class Read extends StmtNode {
+        private final int slot;
+
+        Read(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public void exec(int[] frame, IntSupplier input, IntConsumer output) {
+            frame[slot] = input.getAsInt();
+        }
+    }
+
+    static final class Empty extends StmtNode {
+        static final Empty INSTANCE = new Empty();
+
+        @Override
+        public void exec(int[] frame, IntSupplier input, IntConsumer output) {
+        }
+    }
+}
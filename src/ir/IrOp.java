@@ -0,0 +1,98 @@
+package ir;
+
+/**
+ * Opcodes of the {@link IrProgram} instruction set, one per TAC operation.
+ *
+ * Operand usage (unused operands are {@link Operand#NONE}):
+ * <pre>
+ * COPY   dst = a
+ * ADD    dst = a + b
+ * SUB    dst = a - b
+ * LT     dst = (a &lt; b) ? 1 : 0
+ * IFZ    if a == 0 goto label b
+ * IFNZ   if a != 0 goto label b
+ * GOTO   goto label a
+ * LABEL  label a
+ * PRINT  print a
+ * READ   dst = next input
+ * NOP    nothing; passes use it to blank out instructions before compacting
+ * </pre>
+ */
+public final class IrOp {
+    public static final int COPY  = 0;
+    public static final int ADD   = 1;
+    public static final int SUB   = 2;
+    public static final int LT    = 3;
+    public static final int IFZ   = 4;
+    public static final int IFNZ  = 5;
+    public static final int GOTO  = 6;
+    public static final int LABEL = 7;
+    public static final int PRINT = 8;
+    public static final int READ  = 9;
+    public static final int NOP   = 10;
+
+    // The Quadruple op string for each opcode
+    private static final String[] QUAD_OPS = {
+            "=", "+", "-", "<", "IFZ", "IFNZ", "GOTO", "LABEL", "PRINT", "READ", "NOP"
+    };
+
+    private IrOp() {
+    }
+
+    /**
+     * Looks up the opcode for a Quadruple op string, or -1 if there is none.
+     */
+    public static int fromQuadOp(String op) {
+        switch (op) {
+            case "=": return COPY;
+            case "+": return ADD;
+            case "-": return SUB;
+            case "<": return LT;
+            case "IFZ": return IFZ;
+            case "IFNZ": return IFNZ;
+            case "GOTO": return GOTO;
+            case "LABEL": return LABEL;
+            case "PRINT": return PRINT;
+            case "READ": return READ;
+            case "NOP": return NOP;
+            default: return -1;
+        }
+    }
+
+    public static String quadOp(int op) {
+        return (op >= 0 && op < QUAD_OPS.length) ? QUAD_OPS[op] : "?" + op;
+    }
+
+    /**
+     * True for ADD, SUB and LT, which compute dst from a and b.
+     */
+    public static boolean isBinary(int op) {
+        return op == ADD || op == SUB || op == LT;
+    }
+
+    /**
+     * True if the instruction writes its dst operand.
+     */
+    public static boolean definesDst(int op) {
+        return op <= LT || op == READ;
+    }
+
+    /**
+     * True for IFZ, IFNZ and GOTO.
+     */
+    public static boolean isJump(int op) {
+        return op == IFZ || op == IFNZ || op == GOTO;
+    }
+
+    /**
+     * Evaluates a binary operator on constants.
+     */
+    public static int fold(int op, int a, int b) {
+        switch (op) {
+            case ADD: return a + b;
+            case SUB: return a - b;
+            case LT: return (a < b) ? 1 : 0;
+            default: throw new IllegalArgumentException("Not a binary op: " + quadOp(op));
+        }
+    }
+}
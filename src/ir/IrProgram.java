@@ -0,0 +1,374 @@
+package ir;
+
+import icg.Quadruple;
+import icg.TacGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A TAC program in packed form: one int opcode (see {@link IrOp}) and three
+ * tagged long operands (see {@link Operand}) per instruction, each kept in
+ * its own array.
+ *
+ * Operands are classified once, when the program is built, so passes
+ * switch on ints and compare longs instead of re-parsing operand strings.
+ * Variables and temps share one dense ID space, which analyses can use
+ * directly as bit indices. Names are only needed again by
+ * {@link #toQuads()}.
+ */
+public final class IrProgram {
+
+    private int[] ops;
+    private long[] dsts;
+    private long[] as;
+    private long[] bs;
+    private int size;
+
+    private final Names variables;
+    private final Names labels;
+    private final BitSet temps;
+
+    public IrProgram() {
+        this(16, new Names(), new Names(), new BitSet());
+    }
+
+    private IrProgram(int capacity, Names variables, Names labels, BitSet temps) {
+        capacity = Math.max(capacity, 16);
+        this.ops = new int[capacity];
+        this.dsts = new long[capacity];
+        this.as = new long[capacity];
+        this.bs = new long[capacity];
+        this.variables = variables;
+        this.labels = labels;
+        this.temps = temps;
+    }
+
+    /**
+     * An empty program that shares this one's variable and label IDs, for
+     * passes that rebuild the instruction list. IDs allocated through either
+     * program are valid in both.
+     */
+    public IrProgram derive() {
+        return new IrProgram(size, variables, labels, temps);
+    }
+
+    // ---- conversion ----
+
+    public static IrProgram fromQuads(List<Quadruple> quads) {
+        IrProgram ir = new IrProgram(quads.size(), new Names(), new Names(), new BitSet());
+        for (Quadruple q : quads) {
+            int op = IrOp.fromQuadOp(q.op());
+            switch (op) {
+                case IrOp.COPY:
+                    ir.add(op, ir.value(q.result()), ir.value(q.arg1()), Operand.NONE);
+                    break;
+                case IrOp.ADD:
+                case IrOp.SUB:
+                case IrOp.LT:
+                    ir.add(op, ir.value(q.result()), ir.value(q.arg1()), ir.value(q.arg2()));
+                    break;
+                case IrOp.IFZ:
+                case IrOp.IFNZ:
+                    ir.add(op, Operand.NONE, ir.value(q.arg1()), ir.labelOperand(q.arg2()));
+                    break;
+                case IrOp.GOTO:
+                case IrOp.LABEL:
+                    ir.add(op, Operand.NONE, ir.labelOperand(q.arg1()), Operand.NONE);
+                    break;
+                case IrOp.PRINT:
+                    ir.add(op, Operand.NONE, ir.value(q.result() != null ? q.result() : q.arg1()), Operand.NONE);
+                    break;
+                case IrOp.READ:
+                    ir.add(op, ir.value(q.result() != null ? q.result() : q.arg1()), Operand.NONE, Operand.NONE);
+                    break;
+                case IrOp.NOP:
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported quadruple: " + q);
+            }
+        }
+        return ir;
+    }
+
+    /**
+     * Converts back to quadruples, leaving out NOPs.
+     */
+    public List<Quadruple> toQuads() {
+        List<Quadruple> quads = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int op = ops[i];
+            String name = IrOp.quadOp(op);
+            switch (op) {
+                case IrOp.COPY:
+                case IrOp.ADD:
+                case IrOp.SUB:
+                case IrOp.LT:
+                    quads.add(new Quadruple(name, text(as[i]), text(bs[i]), text(dsts[i])));
+                    break;
+                case IrOp.READ:
+                    quads.add(new Quadruple(name, text(dsts[i]), null, null));
+                    break;
+                case IrOp.NOP:
+                    break;
+                default:
+                    quads.add(new Quadruple(name, text(as[i]), text(bs[i]), null));
+                    break;
+            }
+        }
+        return quads;
+    }
+
+    // ---- instructions ----
+
+    public int size() {
+        return size;
+    }
+
+    public int op(int index) {
+        return ops[index];
+    }
+
+    public long dst(int index) {
+        return dsts[index];
+    }
+
+    public long a(int index) {
+        return as[index];
+    }
+
+    public long b(int index) {
+        return bs[index];
+    }
+
+    /**
+     * Appends an instruction and returns its index.
+     */
+    public int add(int op, long dst, long a, long b) {
+        if (size == ops.length) {
+            int capacity = size * 2;
+            ops = Arrays.copyOf(ops, capacity);
+            dsts = Arrays.copyOf(dsts, capacity);
+            as = Arrays.copyOf(as, capacity);
+            bs = Arrays.copyOf(bs, capacity);
+        }
+        set(size, op, dst, a, b);
+        return size++;
+    }
+
+    /**
+     * Appends a copy of instruction {@code index} of {@code from}, which
+     * must share this program's IDs (see {@link #derive()}).
+     */
+    public int add(IrProgram from, int index) {
+        return add(from.ops[index], from.dsts[index], from.as[index], from.bs[index]);
+    }
+
+    public void set(int index, int op, long dst, long a, long b) {
+        ops[index] = op;
+        dsts[index] = dst;
+        as[index] = a;
+        bs[index] = b;
+    }
+
+    public void setA(int index, long a) {
+        as[index] = a;
+    }
+
+    public void setB(int index, long b) {
+        bs[index] = b;
+    }
+
+    public void nop(int index) {
+        set(index, IrOp.NOP, Operand.NONE, Operand.NONE, Operand.NONE);
+    }
+
+    /**
+     * Replaces this program's instructions with those of {@code rebuilt},
+     * which must come from {@link #derive()}, so passes that rebuild the
+     * list can still work in place. {@code rebuilt} must not be used again.
+     */
+    public void replaceInstructions(IrProgram rebuilt) {
+        if (rebuilt.variables != variables || rebuilt.labels != labels) {
+            throw new IllegalArgumentException("Program was not derived from this one");
+        }
+        ops = rebuilt.ops;
+        dsts = rebuilt.dsts;
+        as = rebuilt.as;
+        bs = rebuilt.bs;
+        size = rebuilt.size;
+    }
+
+    /**
+     * Removes NOPs, closing the gaps in place.
+     */
+    public void compact() {
+        int out = 0;
+        for (int i = 0; i < size; i++) {
+            if (ops[i] != IrOp.NOP) {
+                if (out != i) {
+                    set(out, ops[i], dsts[i], as[i], bs[i]);
+                }
+                out++;
+            }
+        }
+        size = out;
+    }
+
+    // ---- names ----
+
+    /**
+     * Number of variable and temp IDs; every such ID is below this.
+     */
+    public int variableCount() {
+        return variables.size();
+    }
+
+    public String variableName(int id) {
+        return variables.name(id);
+    }
+
+    public int labelCount() {
+        return labels.size();
+    }
+
+    public String labelName(int id) {
+        return labels.name(id);
+    }
+
+    /**
+     * Creates a temp whose name no existing variable or temp uses.
+     */
+    public long newTemp() {
+        int id = variables.fresh(TacGenerator.TEMP_PREFIX);
+        temps.set(id);
+        return Operand.temp(id);
+    }
+
+    public boolean isTemp(int id) {
+        return temps.get(id);
+    }
+
+    /**
+     * The operand naming a variable or temp, tagged as whichever it is.
+     */
+    public long variableOperand(int id) {
+        return temps.get(id) ? Operand.temp(id) : Operand.var(id);
+    }
+
+    /**
+     * Creates a label whose name no existing label uses.
+     */
+    public long newLabel() {
+        return Operand.label(labels.fresh("L"));
+    }
+
+    /**
+     * The source-level text of an operand: a number, a name, or null for NONE.
+     */
+    public String text(long operand) {
+        switch (Operand.tag(operand)) {
+            case Operand.TAG_CONST: return Integer.toString(Operand.payload(operand));
+            case Operand.TAG_VAR:
+            case Operand.TAG_TEMP: return variables.name(Operand.payload(operand));
+            case Operand.TAG_LABEL: return labels.name(Operand.payload(operand));
+            default: return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            sb.append(i).append(": ").append(IrOp.quadOp(ops[i]));
+            if (IrOp.definesDst(ops[i])) sb.append(' ').append(text(dsts[i])).append(" <-");
+            if (as[i] != Operand.NONE) sb.append(' ').append(text(as[i]));
+            if (bs[i] != Operand.NONE) sb.append(' ').append(text(bs[i]));
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    // helpers
+
+    private long value(String text) {
+        if (text == null) {
+            return Operand.NONE;
+        }
+        if (isIntegerLiteral(text)) {
+            return Operand.constant(Integer.parseInt(text));
+        }
+        int id = variables.intern(text);
+        if (isTempName(text)) {
+            temps.set(id);
+            return Operand.temp(id);
+        }
+        return Operand.var(id);
+    }
+
+    private long labelOperand(String text) {
+        return Operand.label(labels.intern(text));
+    }
+
+    private static boolean isIntegerLiteral(String s) {
+        int start = s.startsWith("-") ? 1 : 0;
+        if (s.length() == start) return false;
+        for (int i = start; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    /**
+     * Whether {@code s} names a temp: TacGenerator's temps are $t0, $t1, ...
+     */
+    public static boolean isTempName(String s) {
+        int start = TacGenerator.TEMP_PREFIX.length();
+        if (s.length() <= start || !s.startsWith(TacGenerator.TEMP_PREFIX)) return false;
+        for (int i = start; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    /**
+     * A dense numbering of names.
+     */
+    private static final class Names {
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+        private int nextFresh;
+
+        int intern(String name) {
+            Integer id = ids.get(name);
+            if (id == null) {
+                id = names.size();
+                names.add(name);
+                ids.put(name, id);
+            }
+            return id;
+        }
+
+        int fresh(String prefix) {
+            String name;
+            do {
+                name = prefix + nextFresh++;
+            } while (ids.containsKey(name));
+            return intern(name);
+        }
+
+        String name(int id) {
+            return names.get(id);
+        }
+
+        int size() {
+            return names.size();
+        }
+    }
+}
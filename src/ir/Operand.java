@@ -0,0 +1,60 @@
+package ir;
+
+/**
+ * Packs a tagged IR operand into a long: the tag in the high 32 bits and an
+ * int payload in the low 32 bits. The payload is the value of a constant,
+ * the ID of a variable or temp (one shared numbering, see
+ * {@link IrProgram#variableName}) or the ID of a label.
+ */
+public final class Operand {
+    public static final int TAG_NONE  = 0;
+    public static final int TAG_CONST = 1;
+    public static final int TAG_VAR   = 2;
+    public static final int TAG_TEMP  = 3;
+    public static final int TAG_LABEL = 4;
+
+    public static final long NONE = 0L;
+
+    private Operand() {
+    }
+
+    public static long constant(int value) {
+        return make(TAG_CONST, value);
+    }
+
+    public static long var(int id) {
+        return make(TAG_VAR, id);
+    }
+
+    public static long temp(int id) {
+        return make(TAG_TEMP, id);
+    }
+
+    public static long label(int id) {
+        return make(TAG_LABEL, id);
+    }
+
+    public static int tag(long operand) {
+        return (int) (operand >>> 32);
+    }
+
+    public static int payload(long operand) {
+        return (int) operand;
+    }
+
+    public static boolean isConstant(long operand) {
+        return tag(operand) == TAG_CONST;
+    }
+
+    /**
+     * True for variables and temps, i.e. anything with storage.
+     */
+    public static boolean isVariable(long operand) {
+        int tag = tag(operand);
+        return tag == TAG_VAR || tag == TAG_TEMP;
+    }
+
+    private static long make(int tag, int payload) {
+        return ((long) tag << 32) | (payload & 0xFFFFFFFFL);
+    }
+}
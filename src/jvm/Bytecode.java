@@ -0,0 +1,34 @@
+package jvm;
+
+/**
+ * JVM instruction opcodes used by the code generators.
+ */
+public final class Bytecode {
+    public static final int ICONST_0 = 3;
+    public static final int BIPUSH = 16;
+    public static final int SIPUSH = 17;
+    public static final int LDC = 18;
+    public static final int LDC_W = 19;
+    public static final int ILOAD = 21;
+    public static final int ALOAD = 25;
+    public static final int IALOAD = 46;
+    public static final int ISTORE = 54;
+    public static final int IASTORE = 79;
+    public static final int POP = 87;
+    public static final int DUP = 89;
+    public static final int IADD = 96;
+    public static final int ISUB = 100;
+    public static final int IFEQ = 153;
+    public static final int IFNE = 154;
+    public static final int IF_ICMPLT = 161;
+    public static final int IF_ICMPGE = 162;
+    public static final int GOTO = 167;
+    public static final int IRETURN = 172;
+    public static final int RETURN = 177;
+    public static final int INVOKESTATIC = 184;
+    public static final int INVOKEINTERFACE = 185;
+    public static final int WIDE = 196;
+
+    private Bytecode() {
+    }
+}
@@ -0,0 +1,87 @@
+package jvm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a minimal class file: a public final class extending Object with
+ * static methods only, targeting class file version 52 (Java 8).
+ */
+public final class ClassFileWriter {
+
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private record Method(int access, String name, String descriptor, MethodCode code) {
+    }
+
+    private final String internalName;
+    private final ConstantPool pool = new ConstantPool();
+    private final List<Method> methods = new ArrayList<>();
+
+    /**
+     * @param internalName the class name with '/' separators, e.g. "vm/Trace0"
+     */
+    public ClassFileWriter(String internalName) {
+        this.internalName = internalName;
+    }
+
+    public ConstantPool pool() {
+        return pool;
+    }
+
+    /**
+     * Starts a new method body whose locals have the given types.
+     */
+    public MethodCode newCode(String[] localTypes) {
+        return new MethodCode(pool, localTypes);
+    }
+
+    public void addMethod(int access, String name, String descriptor, MethodCode code) {
+        methods.add(new Method(access, name, descriptor, code));
+    }
+
+    public byte[] toByteArray() {
+        try {
+            int thisClass = pool.classRef(internalName);
+            int superClass = pool.classRef("java/lang/Object");
+            // Write method bodies first so every constant they need is pooled
+            List<byte[]> bodies = new ArrayList<>();
+            for (Method m : methods) {
+                pool.utf8(m.name);
+                pool.utf8(m.descriptor);
+                bodies.add(m.code.toAttribute());
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);  // minor
+            out.writeShort(52); // major: Java 8
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(methods.size());
+            for (int i = 0; i < methods.size(); i++) {
+                Method m = methods.get(i);
+                out.writeShort(m.access);
+                out.writeShort(pool.utf8(m.name));
+                out.writeShort(pool.utf8(m.descriptor));
+                out.writeShort(1);
+                out.write(bodies.get(i));
+            }
+            out.writeShort(0); // class attributes
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package jvm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The constant pool of a class being written. Entries are deduplicated,
+ * so asking for the same constant twice returns the same index.
+ */
+public final class ConstantPool {
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int CLASS = 7;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final Map<String, Integer> index = new HashMap<>();
+    private final List<byte[]> entries = new ArrayList<>();
+    private int count = 1; // slot 0 is reserved by the format
+
+    public int utf8(String value) {
+        return intern("U" + value, UTF8, out -> out.writeUTF(value));
+    }
+
+    public int integer(int value) {
+        return intern("I" + value, INTEGER, out -> out.writeInt(value));
+    }
+
+    /**
+     * @param internalName e.g. "java/lang/Object" or "[I"
+     */
+    public int classRef(String internalName) {
+        int name = utf8(internalName);
+        return intern("C" + internalName, CLASS, out -> out.writeShort(name));
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        return memberRef(METHOD_REF, owner, name, descriptor);
+    }
+
+    public int interfaceMethodRef(String owner, String name, String descriptor) {
+        return memberRef(INTERFACE_METHOD_REF, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        return intern(tag + ":" + owner + "." + name + descriptor, tag, out -> {
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return intern("N" + name + ":" + descriptor, NAME_AND_TYPE, out -> {
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+    }
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int intern(String key, int tag, Body body) {
+        Integer existing = index.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        if (count >= 0xFFFF) {
+            throw new IllegalStateException("Constant pool overflow.");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(tag);
+            body.write(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        entries.add(bytes.toByteArray());
+        index.put(key, count);
+        return count++;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeShort(count);
+        for (byte[] entry : entries) {
+            out.write(entry);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package jvm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Builds the Code attribute of one method.
+ *
+ * The generators only branch with an empty operand stack and assign every
+ * local before the first label, so a single locals layout (given to the
+ * constructor) describes the frame at every branch target. That lets this
+ * class emit the StackMapTable itself: one full frame per label and per
+ * instruction following an unconditional jump.
+ */
+public final class MethodCode {
+
+    /**
+     * A branch target. Forward references are patched when it is marked.
+     */
+    public static final class Label {
+        private int position = -1;
+        private final List<Integer> fixups = new ArrayList<>();
+    }
+
+    private static final String INT = "I";
+
+    private final ConstantPool pool;
+    private final String[] localTypes;
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final TreeSet<Integer> frames = new TreeSet<>();
+    private final List<Label> labels = new ArrayList<>();
+    private int stack = 0;
+    private int maxStack = 0;
+    private boolean afterUnconditional = false;
+
+    /**
+     * @param localTypes the type of each local slot: "I" for int, otherwise
+     *                   the internal class name (e.g. "[I"). Reference types
+     *                   are only allowed for parameters.
+     */
+    public MethodCode(ConstantPool pool, String[] localTypes) {
+        this.pool = pool;
+        this.localTypes = localTypes.clone();
+    }
+
+    public int localCount() {
+        return localTypes.length;
+    }
+
+    public Label newLabel() {
+        Label label = new Label();
+        labels.add(label);
+        return label;
+    }
+
+    public void mark(Label label) {
+        if (label.position >= 0) {
+            throw new IllegalStateException("Label marked twice.");
+        }
+        if (stack != 0) {
+            throw new IllegalStateException("Operand stack must be empty at a label.");
+        }
+        label.position = code.size();
+        frames.add(label.position);
+        afterUnconditional = false;
+    }
+
+    // ---- constants and locals ----
+
+    public void iconst(int value) {
+        begin(1);
+        if (value >= -1 && value <= 5) {
+            code.write(Bytecode.ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.write(Bytecode.BIPUSH);
+            code.write(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            code.write(Bytecode.SIPUSH);
+            writeShort(value);
+        } else {
+            int index = pool.integer(value);
+            if (index <= 0xFF) {
+                code.write(Bytecode.LDC);
+                code.write(index);
+            } else {
+                code.write(Bytecode.LDC_W);
+                writeShort(index);
+            }
+        }
+    }
+
+    public void iload(int local) {
+        begin(1);
+        localInsn(Bytecode.ILOAD, local);
+    }
+
+    public void istore(int local) {
+        begin(-1);
+        localInsn(Bytecode.ISTORE, local);
+    }
+
+    public void aload(int local) {
+        begin(1);
+        localInsn(Bytecode.ALOAD, local);
+    }
+
+    // ---- simple instructions ----
+
+    public void iadd() {
+        simple(Bytecode.IADD, -1);
+    }
+
+    public void isub() {
+        simple(Bytecode.ISUB, -1);
+    }
+
+    public void iaload() {
+        simple(Bytecode.IALOAD, -1);
+    }
+
+    public void iastore() {
+        simple(Bytecode.IASTORE, -3);
+    }
+
+    public void dup() {
+        simple(Bytecode.DUP, 1);
+    }
+
+    public void pop() {
+        simple(Bytecode.POP, -1);
+    }
+
+    public void returnVoid() {
+        simple(Bytecode.RETURN, 0);
+        afterUnconditional = true;
+    }
+
+    public void ireturn() {
+        simple(Bytecode.IRETURN, -1);
+        afterUnconditional = true;
+    }
+
+    // ---- control flow ----
+
+    /**
+     * Emits GOTO, IFEQ/IFNE (pop one int) or IF_ICMPxx (pop two ints).
+     */
+    public void jump(int opcode, Label target) {
+        int pops = (opcode == Bytecode.GOTO) ? 0
+                : (opcode == Bytecode.IFEQ || opcode == Bytecode.IFNE) ? 1 : 2;
+        begin(-pops);
+        int at = code.size();
+        code.write(opcode);
+        if (target.position >= 0) {
+            writeBranchOffset(target.position - at);
+        } else {
+            target.fixups.add(at);
+            writeShort(0);
+        }
+        if (stack != 0) {
+            throw new IllegalStateException("Operand stack must be empty at a branch.");
+        }
+        if (opcode == Bytecode.GOTO) {
+            afterUnconditional = true;
+        }
+    }
+
+    // ---- calls ----
+
+    public void invokestatic(String owner, String name, String descriptor) {
+        begin(stackDelta(descriptor, false));
+        code.write(Bytecode.INVOKESTATIC);
+        writeShort(pool.methodRef(owner, name, descriptor));
+    }
+
+    public void invokeinterface(String owner, String name, String descriptor) {
+        begin(stackDelta(descriptor, true));
+        code.write(Bytecode.INVOKEINTERFACE);
+        writeShort(pool.interfaceMethodRef(owner, name, descriptor));
+        code.write(1 + argumentSlots(descriptor));
+        code.write(0);
+    }
+
+    // ---- output ----
+
+    /**
+     * Serializes the Code attribute (including its StackMapTable).
+     */
+    byte[] toAttribute() throws IOException {
+        byte[] bytes = code.toByteArray();
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalStateException("Method too large for the JVM (" + bytes.length + " bytes).");
+        }
+        for (Label label : labels) {
+            if (!label.fixups.isEmpty() && label.position < 0) {
+                throw new IllegalStateException("Jump to a label that was never marked.");
+            }
+            for (int at : label.fixups) {
+                int offset = label.position - at;
+                if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                    throw new IllegalStateException("Branch offset out of range; method too large.");
+                }
+                bytes[at + 1] = (byte) (offset >> 8);
+                bytes[at + 2] = (byte) offset;
+            }
+        }
+        // A frame may not describe the end of the code
+        frames.remove(bytes.length);
+
+        ByteArrayOutputStream attr = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(attr);
+        out.writeShort(pool.utf8("Code"));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream b = new DataOutputStream(body);
+        b.writeShort(maxStack);
+        b.writeShort(localTypes.length);
+        b.writeInt(bytes.length);
+        b.write(bytes);
+        b.writeShort(0); // exception table
+        if (frames.isEmpty()) {
+            b.writeShort(0);
+        } else {
+            b.writeShort(1);
+            writeStackMapTable(b);
+        }
+        out.writeInt(body.size());
+        body.writeTo(out);
+        return attr.toByteArray();
+    }
+
+    private void writeStackMapTable(DataOutputStream out) throws IOException {
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        DataOutputStream t = new DataOutputStream(table);
+        t.writeShort(frames.size());
+        int previous = -1;
+        for (int offset : frames) {
+            t.writeByte(255); // full_frame
+            t.writeShort(offset - previous - 1);
+            t.writeShort(localTypes.length);
+            for (String type : localTypes) {
+                if (type.equals(INT)) {
+                    t.writeByte(1); // Integer
+                } else {
+                    t.writeByte(7); // Object
+                    t.writeShort(pool.classRef(type));
+                }
+            }
+            t.writeShort(0); // empty stack
+            previous = offset;
+        }
+        out.writeShort(pool.utf8("StackMapTable"));
+        out.writeInt(table.size());
+        table.writeTo(out);
+    }
+
+    // helpers
+
+    private void begin(int stackDelta) {
+        if (afterUnconditional) {
+            // Dead code after a jump still needs a frame for the verifier
+            frames.add(code.size());
+            afterUnconditional = false;
+        }
+        stack += stackDelta;
+        if (stack < 0) {
+            throw new IllegalStateException("Operand stack underflow.");
+        }
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private void simple(int opcode, int stackDelta) {
+        begin(stackDelta);
+        code.write(opcode);
+    }
+
+    private void localInsn(int opcode, int local) {
+        if (local < 0 || local >= localTypes.length) {
+            throw new IllegalArgumentException("No local " + local);
+        }
+        if (local <= 0xFF) {
+            code.write(opcode);
+            code.write(local);
+        } else {
+            code.write(Bytecode.WIDE);
+            code.write(opcode);
+            writeShort(local);
+        }
+    }
+
+    private void writeShort(int value) {
+        code.write(value >> 8);
+        code.write(value);
+    }
+
+    private void writeBranchOffset(int offset) {
+        if (offset < Short.MIN_VALUE) {
+            throw new IllegalStateException("Branch offset out of range; method too large.");
+        }
+        writeShort(offset);
+    }
+
+    /**
+     * Counts argument slots in a descriptor made of I, Z and reference types.
+     */
+    private static int argumentSlots(String descriptor) {
+        int slots = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            if (c == 'L') {
+                i = descriptor.indexOf(';', i) + 1;
+            } else if (c == '[') {
+                while (descriptor.charAt(i) == '[') i++;
+                if (descriptor.charAt(i) == 'L') {
+                    i = descriptor.indexOf(';', i) + 1;
+                } else {
+                    i++;
+                }
+            } else if (c == 'J' || c == 'D') {
+                throw new IllegalArgumentException("Wide arguments are not supported: " + descriptor);
+            } else {
+                i++;
+            }
+            slots++;
+        }
+        return slots;
+    }
+
+    private static int stackDelta(String descriptor, boolean hasReceiver) {
+        int delta = -argumentSlots(descriptor) - (hasReceiver ? 1 : 0);
+        return descriptor.endsWith(")V") ? delta : delta + 1;
+    }
+}
@@ -1,38 +1,80 @@
 package lexer;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class Lexer {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+    private static final int MAX_INITIAL_CAPACITY = 1 << 16;
+
+    private final CharSequence source;
+    private final int length;
+    private final TokenBuffer tokens;
+    private final SymbolPool symbols;
     private int start = 0;
     private int current = 0;
     private int line = 1;
-
-    private static final Map<String, TokenType> keywords;
-    static {
-        keywords = new HashMap<>();
-        keywords.put("int", TokenType.INT);
-        keywords.put("if", TokenType.IF);
-        keywords.put("else", TokenType.ELSE);
-        keywords.put("while", TokenType.WHILE);
-        keywords.put("print", TokenType.PRINT);
-        keywords.put("read", TokenType.READ);
+    private boolean done = false;
+
+    /**
+     * @param source any char sequence: a String, a {@link java.nio.CharBuffer},
+     *               or a {@link MappedSource} over a memory-mapped file
+     */
+    public Lexer(CharSequence source) {
+        this(source, new SymbolPool());
     }
 
-    public Lexer(String source) {
+    /**
+     * @param symbols the pool identifiers are interned into
+     */
+    public Lexer(CharSequence source, SymbolPool symbols) {
         this.source = source;
+        this.length = source.length();
+        // Roughly one token per 4 characters of typical source, but don't
+        // reserve huge arrays up front for huge inputs
+        this.tokens = new TokenBuffer(source, Math.min(length / 4, MAX_INITIAL_CAPACITY), symbols);
+        this.symbols = symbols;
     }
 
     public List<Token> scanTokens() {
-        while (!isAtEnd()) {
+        return scanBuffer().toTokenList();
+    }
+
+    /**
+     * Scans the whole source into a {@link TokenBuffer}. Unlike
+     * {@link #scanTokens()} this allocates nothing per token.
+     */
+    public TokenBuffer scanBuffer() {
+        while (fill(Integer.MAX_VALUE)) {
+            // keep scanning
+        }
+        return tokens;
+    }
+
+    /**
+     * Scans until the buffer holds at least {@code minTokens} tokens or the
+     * source is exhausted. Together with {@link TokenBuffer#discardBefore}
+     * this lets a caller lex an arbitrarily large input in a bounded window.
+     *
+     * @return false once the EOF token has been added
+     */
+    public boolean fill(int minTokens) {
+        if (done) return false;
+        while (tokens.size() < minTokens) {
+            if (isAtEnd()) {
+                start = current;
+                addToken(TokenType.EOF);
+                done = true;
+                return false;
+            }
             start = current;
             scanToken();
         }
-        tokens.add(new Token(TokenType.EOF, "", line));
+        return true;
+    }
+
+    /**
+     * The buffer this lexer appends to.
+     */
+    public TokenBuffer buffer() {
         return tokens;
     }
 
@@ -62,7 +104,7 @@ public class Lexer {
                 } else if (isAlpha(c)) {
                     scanIdentifier();
                 } else {
-                    addToken(TokenType.UNKNOWN, Character.toString(c));
+                    addToken(TokenType.UNKNOWN);
                 }
                 break;
         }
@@ -70,15 +112,54 @@ public class Lexer {
 
     private void scanNumber() {
         while (isDigit(peek())) advance();
-        String number = source.substring(start, current);
-        addToken(TokenType.NUMBER, number);
+        addToken(TokenType.NUMBER);
     }
 
     private void scanIdentifier() {
         while (isAlphaNumeric(peek())) advance();
-        String text = source.substring(start, current);
-        TokenType type = keywords.getOrDefault(text, TokenType.IDENTIFIER);
-        addToken(type, text);
+        TokenType type = keywordOrIdentifier();
+        if (type == TokenType.IDENTIFIER) {
+            tokens.add(type, start, current - start, line, symbols.intern(source, start, current - start));
+        } else {
+            addToken(type);
+        }
+    }
+
+    /**
+     * Recognizes keywords by length and first character, then compares in
+     * place, so no substring or hash lookup is needed per identifier.
+     */
+    private TokenType keywordOrIdentifier() {
+        int size = current - start;
+        switch (source.charAt(start)) {
+            case 'i':
+                if (size == 3 && matches("int")) return TokenType.INT;
+                if (size == 2 && matches("if")) return TokenType.IF;
+                break;
+            case 'e':
+                if (size == 4 && matches("else")) return TokenType.ELSE;
+                break;
+            case 'w':
+                if (size == 5 && matches("while")) return TokenType.WHILE;
+                break;
+            case 'p':
+                if (size == 5 && matches("print")) return TokenType.PRINT;
+                break;
+            case 'r':
+                if (size == 4 && matches("read")) return TokenType.READ;
+                break;
+            default:
+                break;
+        }
+        return TokenType.IDENTIFIER;
+    }
+
+    private boolean matches(String keyword) {
+        // The first character was already checked by the switch
+        for (int i = 1; i < keyword.length(); i++) {
+            if (source.charAt(start + i) != keyword.charAt(i)) return false;
+        }
+        return true;
     }
 
     private char advance() {
@@ -86,7 +167,7 @@ public class Lexer {
     }
 
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= length;
     }
 
     private char peek() {
@@ -107,10 +188,6 @@ public class Lexer {
     }
 
     private void addToken(TokenType type) {
-        addToken(type, source.substring(start, current));
-    }
-
-    private void addToken(TokenType type, String lexeme) {
-        tokens.add(new Token(type, lexeme, line));
+        tokens.add(type, start, current - start, line);
     }
 }
\ No newline at end of file
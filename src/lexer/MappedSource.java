@@ -0,0 +1,59 @@
+package lexer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A source file memory-mapped as ASCII and exposed as a {@link CharSequence},
+ * so the lexer can scan it without decoding it into a heap String first.
+ * Bytes outside ASCII are passed through as chars 128-255 and end up as
+ * UNKNOWN tokens, which is what the lexer does with them anyway.
+ */
+public final class MappedSource implements CharSequence {
+
+    private final ByteBuffer bytes;
+
+    private MappedSource(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Maps the whole file read-only. The mapping stays valid after this
+     * returns; the channel itself is closed.
+     */
+    public static MappedSource open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to map (" + size + " bytes, limit 2 GB).");
+            }
+            return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes.get(index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new MappedSource(bytes.slice(start, end - start));
+    }
+
+    @Override
+    public String toString() {
+        byte[] copy = new byte[bytes.limit()];
+        bytes.get(0, copy);
+        return new String(copy, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,97 @@
+package lexer;
+
+import java.util.Arrays;
+
+/**
+ * Assigns every distinct identifier of a compilation a dense int ID
+ * (0, 1, 2, ...) and keeps one canonical String per ID.
+ *
+ * {@link #intern(CharSequence, int, int)} hashes and compares the
+ * identifier in place in the source, so a name that has been seen before
+ * costs no allocation. Later phases compare IDs, or the canonical Strings
+ * (whose hash codes are computed once), instead of fresh lexeme copies.
+ */
+public final class SymbolPool {
+
+    private String[] names = new String[64];
+    private int[] hashes = new int[64];
+    private int[] table = new int[128]; // id + 1 per bucket, 0 when empty
+    private int size;
+
+    /**
+     * Returns the ID of {@code text[start, start + length)}, adding it if new.
+     */
+    public int intern(CharSequence text, int start, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + text.charAt(start + i);
+        }
+        int mask = table.length - 1;
+        for (int b = mix(hash) & mask; ; b = (b + 1) & mask) {
+            int entry = table[b];
+            if (entry == 0) {
+                return add(text.subSequence(start, start + length).toString(), hash, b);
+            }
+            int id = entry - 1;
+            if (hashes[id] == hash && sameChars(names[id], text, start, length)) {
+                return id;
+            }
+        }
+    }
+
+    public int intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+    /**
+     * The canonical String for an ID.
+     */
+    public String name(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int add(String name, int hash, int bucket) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        names[id] = name;
+        hashes[id] = hash;
+        table[bucket] = id + 1;
+        // Keep the table at most half full
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int b = mix(hashes[id]) & mask;
+            while (table[b] != 0) {
+                b = (b + 1) & mask;
+            }
+            table[b] = id + 1;
+        }
+    }
+
+    private static int mix(int hash) {
+        // Spread the low bits, which linear probing depends on
+        return hash ^ (hash >>> 16) ^ (hash >>> 7);
+    }
+
+    private static boolean sameChars(String name, CharSequence text, int start, int length) {
+        if (name.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != text.charAt(start + i)) return false;
+        }
+        return true;
+    }
+}
@@ -1,14 +1,28 @@
 package lexer;
 
 public class Token {
+    /**
+     * The symbolId of tokens that are not identifiers.
+     */
+    public static final int NO_SYMBOL = -1;
+
     public final TokenType type;
     public final String lexeme;
     public final int lineNumber;
+    /**
+     * For identifiers, the name's ID in the compilation's {@link SymbolPool}.
+     */
+    public final int symbolId;
 
     public Token(TokenType type, String lexeme, int lineNumber) {
+        this(type, lexeme, lineNumber, NO_SYMBOL);
+    }
+
+    public Token(TokenType type, String lexeme, int lineNumber, int symbolId) {
         this.type = type;
         this.lexeme = lexeme;
         this.lineNumber = lineNumber;
+        this.symbolId = symbolId;
     }
 
     @Override
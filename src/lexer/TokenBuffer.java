@@ -0,0 +1,158 @@
+package lexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tokens stored as parallel primitive arrays (type, start offset, length,
+ * line) over the source text, instead of one {@link Token} object each.
+ * Lexemes and Token objects are only created when somebody asks for them.
+ * Identifiers also carry their {@link SymbolPool} ID, and their lexeme is
+ * the pool's canonical String rather than a fresh copy.
+ */
+public final class TokenBuffer {
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final CharSequence source;
+    private final SymbolPool symbols;
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int[] symbolIds;
+    private int size;
+
+    public TokenBuffer(CharSequence source) {
+        this(source, 64, new SymbolPool());
+    }
+
+    public TokenBuffer(CharSequence source, int initialCapacity, SymbolPool symbols) {
+        this.source = source;
+        this.symbols = symbols;
+        int capacity = Math.max(initialCapacity, 16);
+        this.types = new byte[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.lines = new int[capacity];
+        this.symbolIds = new int[capacity];
+    }
+
+    /**
+     * Wraps already-materialized tokens, e.g. ones built by hand.
+     * Their lexemes are concatenated to form the buffer's source.
+     */
+    public static TokenBuffer of(List<Token> tokens) {
+        StringBuilder text = new StringBuilder();
+        int[] offsets = new int[tokens.size()];
+        for (int i = 0; i < tokens.size(); i++) {
+            offsets[i] = text.length();
+            text.append(tokens.get(i).lexeme);
+        }
+        SymbolPool symbols = new SymbolPool();
+        TokenBuffer buffer = new TokenBuffer(text.toString(), tokens.size(), symbols);
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            int symbolId = (token.type == TokenType.IDENTIFIER) ? symbols.intern(token.lexeme) : Token.NO_SYMBOL;
+            buffer.add(token.type, offsets[i], token.lexeme.length(), token.lineNumber, symbolId);
+        }
+        return buffer;
+    }
+
+    public void add(TokenType type, int start, int length, int line) {
+        add(type, start, length, line, Token.NO_SYMBOL);
+    }
+
+    public void add(TokenType type, int start, int length, int line, int symbolId) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            symbolIds = Arrays.copyOf(symbolIds, capacity);
+        }
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        symbolIds[size] = symbolId;
+        size++;
+    }
+
+    /**
+     * Drops the tokens before {@code index}; token {@code index} becomes token 0.
+     * The arrays keep their capacity, so a reader that discards what it has
+     * consumed keeps the buffer at a fixed size.
+     */
+    public void discardBefore(int index) {
+        if (index <= 0) return;
+        int remaining = size - index;
+        System.arraycopy(types, index, types, 0, remaining);
+        System.arraycopy(starts, index, starts, 0, remaining);
+        System.arraycopy(lengths, index, lengths, 0, remaining);
+        System.arraycopy(lines, index, lines, 0, remaining);
+        System.arraycopy(symbolIds, index, symbolIds, 0, remaining);
+        size = remaining;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    /**
+     * The identifier's {@link SymbolPool} ID, or {@link Token#NO_SYMBOL}.
+     */
+    public int symbolId(int index) {
+        return symbolIds[index];
+    }
+
+    public SymbolPool symbols() {
+        return symbols;
+    }
+
+    public String lexeme(int index) {
+        if (symbolIds[index] != Token.NO_SYMBOL) {
+            return symbols.name(symbolIds[index]);
+        }
+        return source.subSequence(starts[index], starts[index] + lengths[index]).toString();
+    }
+
+    /**
+     * Parses a NUMBER token without materializing its lexeme.
+     *
+     * @throws NumberFormatException if the literal does not fit in an int
+     */
+    public int intValue(int index) {
+        return Integer.parseInt(source, starts[index], starts[index] + lengths[index], 10);
+    }
+
+    public Token token(int index) {
+        return new Token(type(index), lexeme(index), lines[index], symbolIds[index]);
+    }
+
+    public List<Token> toTokenList() {
+        List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(token(i));
+        }
+        return tokens;
+    }
+}
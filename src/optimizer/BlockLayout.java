@@ -0,0 +1,111 @@
+package optimizer;
+
+import icg.Quadruple;
+import ir.IrOp;
+import ir.IrProgram;
+import ir.Operand;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Profile-guided block layout: moves the cold arm of an if/else out of
+ * line, so the hot arm runs straight through.
+ *
+ * An if/else comes out of TacGenerator as
+ * <pre>
+ * IFZ t Le; then; GOTO Lend; LABEL Le; else; LABEL Lend
+ * </pre>
+ * When the profile says the IFZ falls through more often than it jumps,
+ * the then arm pays for two jumps and the else arm for one, the wrong way
+ * round. The else arm, from {@code LABEL Le} up to {@code LABEL Lend}, is
+ * moved to the end of the program with a {@code GOTO Lend} after it, and
+ * the then arm's GOTO is dropped, leaving one jump on the hot path and
+ * two on the cold one. The program's own end gets a GOTO past the moved
+ * code.
+ *
+ * Moving code only changes fall-through edges: the arm is only entered by
+ * jumping to its labels, which move with it, and its fall-through into
+ * {@code Lend} becomes the GOTO. Arms must be nested in or disjoint from
+ * each other; one that partly overlaps an earlier one stays put.
+ */
+public class BlockLayout {
+
+    public List<Quadruple> layOut(List<Quadruple> code, Profile profile) {
+        return layOut(IrProgram.fromQuads(code), profile).toQuads();
+    }
+
+    /**
+     * Lays out {@code code} in place. Returns {@code code}.
+     */
+    public IrProgram layOut(IrProgram code, Profile profile) {
+        int n = code.size();
+        if (n == 0 || profile.isEmpty()) return code;
+        int[] labelAt = new int[code.labelCount()];
+        Arrays.fill(labelAt, -1);
+        for (int i = 0; i < n; i++) {
+            if (code.op(i) == IrOp.LABEL) labelAt[Operand.payload(code.a(i))] = i;
+        }
+
+        // coldEnd[j] > j if the arm starting at j moves. Arms not yet
+        // passed are kept innermost first; a new one must lie before or
+        // inside the innermost, and so before or inside all of them.
+        int[] coldEnd = new int[n];
+        Deque<int[]> open = new ArrayDeque<>();
+        boolean any = false;
+        for (int i = 0; i < n; i++) {
+            while (!open.isEmpty() && open.peek()[1] <= i) open.pop();
+            int op = code.op(i);
+            if (op != IrOp.IFZ && op != IrOp.IFNZ) continue;
+            int j = labelAt[Operand.payload(code.b(i))];
+            if (j <= i + 1 || code.op(j - 1) != IrOp.GOTO) continue;
+            int k = labelAt[Operand.payload(code.a(j - 1))];
+            if (k <= j) continue;
+            if (!open.isEmpty()) {
+                int[] arm = open.peek();
+                if (k > arm[0] && (j < arm[0] || k > arm[1])) continue;
+            }
+            String target = code.text(code.b(i));
+            if (profile.branchNotTaken(target) <= profile.branchTaken(target)) continue;
+            coldEnd[j] = k;
+            open.push(new int[] {j, k});
+            any = true;
+        }
+        if (!any) return code;
+
+        IrProgram out = code.derive();
+        Deque<Integer> cold = new ArrayDeque<>();
+        copy(code, 0, n, coldEnd, cold, out);
+        long exit = code.newLabel();
+        out.add(IrOp.GOTO, Operand.NONE, exit, Operand.NONE);
+        while (!cold.isEmpty()) {
+            int j = cold.poll();
+            int k = coldEnd[j];
+            copy(code, j, k, coldEnd, cold, out);
+            out.add(IrOp.GOTO, Operand.NONE, code.a(k), Operand.NONE);
+        }
+        out.add(IrOp.LABEL, Operand.NONE, exit, Operand.NONE);
+        code.replaceInstructions(out);
+        return code;
+    }
+
+    /**
+     * Copies {@code [from, to)} to {@code out}, leaving out arms that move
+     * (and the GOTO in front of each) and queueing them instead.
+     */
+    private static void copy(IrProgram code, int from, int to, int[] coldEnd, Deque<Integer> cold, IrProgram out) {
+        int i = from;
+        while (i < to) {
+            if (i + 1 < to && coldEnd[i + 1] > i + 1) {
+                // The then arm's GOTO Lend: Lend now follows directly
+                cold.add(i + 1);
+                i = coldEnd[i + 1];
+                continue;
+            }
+            out.add(code, i);
+            i++;
+        }
+    }
+}
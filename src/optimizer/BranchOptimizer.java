@@ -0,0 +1,201 @@
+package optimizer;
+
+import icg.Quadruple;
+import ir.IrOp;
+import ir.IrProgram;
+import ir.Operand;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cleans up jumps and labels left by lowering and by the other passes.
+ *
+ * <ul>
+ * <li>Labels placed next to each other are merged into the first one.</li>
+ * <li>A jump to a block that only does {@code GOTO L} goes straight to
+ * {@code L}, following chains of such blocks (jump threading).</li>
+ * <li>A jump to the label right after it is removed.</li>
+ * <li>{@code IFZ t L1; GOTO L2; LABEL L1} becomes {@code IFNZ t L2;
+ * LABEL L1}, which is what an {@code if} with an empty else arm turns
+ * into once its labels are merged.</li>
+ * <li>Blocks that cannot be reached from the entry are deleted.</li>
+ * <li>Labels no jump refers to are deleted, so the blocks on either side
+ * of them become one.</li>
+ * </ul>
+ * Each rule can expose others, so they are applied until nothing changes.
+ * A cycle of blocks that only jump to each other is an infinite loop, and
+ * threading stops when it comes back round.
+ */
+public class BranchOptimizer {
+
+    private IrProgram ir;
+    private int[] labelAt;     // label ID -> instruction index, or -1
+    private long[] resolved;   // label ID -> label jumps to it should use, 0 if not yet known
+    private boolean[] onPath;  // label ID -> on the chain being resolved
+    private int[] path;        // that chain
+
+    public List<Quadruple> optimizeBranches(List<Quadruple> code) {
+        return optimizeBranches(IrProgram.fromQuads(code)).toQuads();
+    }
+
+    /**
+     * Optimizes jumps and labels in place. Returns {@code code}.
+     */
+    public IrProgram optimizeBranches(IrProgram code) {
+        ir = code;
+        boolean changed = true;
+        while (changed && code.size() > 0) {
+            changed = thread();
+            changed |= removeUnreachable();
+            changed |= simplifyJumps();
+            changed |= removeUnusedLabels();
+        }
+        ir = null;
+        labelAt = null;
+        resolved = null;
+        onPath = null;
+        path = null;
+        return code;
+    }
+
+    /**
+     * Retargets every jump to where it finally ends up. Returns whether
+     * any jump changed.
+     */
+    private boolean thread() {
+        int labels = ir.labelCount();
+        labelAt = new int[labels];
+        Arrays.fill(labelAt, -1);
+        for (int i = 0; i < ir.size(); i++) {
+            if (ir.op(i) == IrOp.LABEL) labelAt[Operand.payload(ir.a(i))] = i;
+        }
+        resolved = new long[labels];
+        onPath = new boolean[labels];
+        path = new int[labels];
+
+        boolean changed = false;
+        for (int i = 0; i < ir.size(); i++) {
+            int op = ir.op(i);
+            if (!IrOp.isJump(op)) continue;
+            long target = (op == IrOp.GOTO) ? ir.a(i) : ir.b(i);
+            long to = resolve(target);
+            if (to == target) continue;
+            if (op == IrOp.GOTO) ir.setA(i, to); else ir.setB(i, to);
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * The label a jump to {@code label} should use: the first label of the
+     * run it is placed in or, if that run is followed by a GOTO, wherever
+     * the GOTO's target resolves to.
+     */
+    private long resolve(long label) {
+        int count = 0;
+        long current = label;
+        long result;
+        while (true) {
+            int id = Operand.payload(current);
+            if (resolved[id] != 0) {
+                result = resolved[id];
+                break;
+            }
+            if (onPath[id] || labelAt[id] < 0) {
+                result = current; // came back round a cycle, or left to the CFG to report
+                break;
+            }
+            onPath[id] = true;
+            path[count++] = id;
+            int i = labelAt[id];
+            while (i > 0 && ir.op(i - 1) == IrOp.LABEL) i--;
+            long head = ir.a(i);
+            while (i < ir.size() && ir.op(i) == IrOp.LABEL) i++;
+            if (i < ir.size() && ir.op(i) == IrOp.GOTO) {
+                current = ir.a(i);
+                continue;
+            }
+            result = head;
+            break;
+        }
+        for (int k = 0; k < count; k++) {
+            resolved[path[k]] = result;
+            onPath[path[k]] = false;
+        }
+        return result;
+    }
+
+    /**
+     * Deletes blocks no path from the entry reaches. Returns whether
+     * anything was deleted.
+     */
+    private boolean removeUnreachable() {
+        ControlFlowGraph cfg = new ControlFlowGraph(ir);
+        boolean[] reachable = new boolean[cfg.blockCount()];
+        int[] order = cfg.reversePostorder();
+        for (int b : order) reachable[b] = true;
+        if (order.length == cfg.blockCount()) return false;
+
+        for (int b = 0; b < cfg.blockCount(); b++) {
+            if (reachable[b]) continue;
+            for (int i = cfg.start(b); i < cfg.end(b); i++) ir.nop(i);
+        }
+        ir.compact();
+        return true;
+    }
+
+    /**
+     * Removes jumps to the next label and inverts a conditional jump over
+     * a GOTO. Returns whether anything changed.
+     */
+    private boolean simplifyJumps() {
+        boolean changed = false;
+        for (int i = 0; i < ir.size(); i++) {
+            int op = ir.op(i);
+            if (!IrOp.isJump(op)) continue;
+            long target = (op == IrOp.GOTO) ? ir.a(i) : ir.b(i);
+            if (isPlacedAfter(target, i)) {
+                ir.nop(i);
+                changed = true;
+            } else if (op != IrOp.GOTO && i + 1 < ir.size() && ir.op(i + 1) == IrOp.GOTO
+                    && isPlacedAfter(target, i + 1)) {
+                int inverted = (op == IrOp.IFZ) ? IrOp.IFNZ : IrOp.IFZ;
+                ir.set(i, inverted, Operand.NONE, ir.a(i), ir.a(i + 1));
+                ir.nop(++i);
+                changed = true;
+            }
+        }
+        if (changed) ir.compact();
+        return changed;
+    }
+
+    /**
+     * True if {@code label} is among the labels right after instruction
+     * {@code index}, so jumping there from it is the same as falling through.
+     */
+    private boolean isPlacedAfter(long label, int index) {
+        for (int j = index + 1; j < ir.size() && ir.op(j) == IrOp.LABEL; j++) {
+            if (ir.a(j) == label) return true;
+        }
+        return false;
+    }
+
+    private boolean removeUnusedLabels() {
+        boolean[] used = new boolean[ir.labelCount()];
+        for (int i = 0; i < ir.size(); i++) {
+            int op = ir.op(i);
+            if (op == IrOp.GOTO) used[Operand.payload(ir.a(i))] = true;
+            if (op == IrOp.IFZ || op == IrOp.IFNZ) used[Operand.payload(ir.b(i))] = true;
+        }
+        boolean changed = false;
+        for (int i = 0; i < ir.size(); i++) {
+            if (ir.op(i) == IrOp.LABEL && !used[Operand.payload(ir.a(i))]) {
+                ir.nop(i);
+                changed = true;
+            }
+        }
+        if (changed) ir.compact();
+        return changed;
+    }
+}
@@ -0,0 +1,265 @@
+package optimizer;
+
+import icg.Quadruple;
+import ir.IrOp;
+import ir.IrProgram;
+import ir.Operand;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dominator-based value numbering (Briggs, Cooper and Simpson) with copy
+ * propagation.
+ *
+ * Every {@link SsaForm} value gets a value number, the ID of the first
+ * value known to be equal to it. Blocks are visited in dominator tree
+ * preorder with a table from (op, operand numbers) to the value that first
+ * computed it, so an expression is found again later in its own block
+ * (local numbering) and in every block it dominates (global numbering);
+ * a block's entries are dropped when its subtree is done. Copies take the
+ * number of their source, and a phi whose arguments all have the same
+ * number takes that number too.
+ *
+ * The program is not in SSA, so an earlier value is only reused while its
+ * variable still holds it:
+ * <ul>
+ * <li>a recomputation becomes a copy of the variable holding the earlier
+ * result;</li>
+ * <li>an operand is replaced by the variable holding the first value
+ * with the same number, so reads skip over copies.</li>
+ * </ul>
+ * Copies left dead by this are for {@link DeadCodeEliminator} to remove.
+ */
+public class CommonSubexpressionEliminator {
+
+    private static final int NONE = -1;
+
+    private IrProgram ir;
+    private ControlFlowGraph cfg;
+    private SsaForm ssa;
+    private int[] number;         // value -> value number, NONE until visited
+    private int[] current;        // variable -> value it holds at this point
+
+    // Expression table, open addressing; a key stays once added and undoing
+    // a block only restores the value it maps to
+    private int[] keyOp;
+    private long[] keyA;
+    private long[] keyB;
+    private int[] leader;         // slot -> value, NONE if empty or undone
+    private int mask;
+
+    // Undo log for current[] (var >= 0) and the table (-(slot + 1))
+    private int[] logWhat = new int[16];
+    private int[] logOld = new int[16];
+    private int log;
+
+    public List<Quadruple> eliminate(List<Quadruple> code) {
+        return eliminate(IrProgram.fromQuads(code)).toQuads();
+    }
+
+    /**
+     * Removes redundant computations in place. Returns {@code code}.
+     */
+    public IrProgram eliminate(IrProgram code) {
+        if (code.size() == 0) return code;
+        ir = code;
+        cfg = new ControlFlowGraph(code);
+        ssa = new SsaForm(new DominatorTree(cfg));
+        number = new int[ssa.valueCount()];
+        Arrays.fill(number, NONE);
+        current = new int[code.variableCount()];
+        for (int v = 0; v < current.length; v++) {
+            number[v] = v;
+            current[v] = v;
+        }
+        int binaries = 0;
+        for (int i = 0; i < code.size(); i++) {
+            if (IrOp.isBinary(code.op(i))) binaries++;
+        }
+        int capacity = Integer.highestOneBit(Math.max(binaries, 8) * 2 - 1) << 1;
+        keyOp = new int[capacity];
+        keyA = new long[capacity];
+        keyB = new long[capacity];
+        leader = new int[capacity];
+        Arrays.fill(keyOp, NONE);
+        Arrays.fill(leader, NONE);
+        mask = capacity - 1;
+
+        walk();
+
+        ssa = null;
+        cfg = null;
+        ir = null;
+        number = null;
+        current = null;
+        keyOp = null;
+        keyA = null;
+        keyB = null;
+        leader = null;
+        return code;
+    }
+
+    private void walk() {
+        DominatorTree dominators = ssa.dominators();
+        int n = cfg.blockCount();
+        int[] stack = new int[n];
+        int[] next = new int[n];
+        int[] mark = new int[n];
+        int sp = 0;
+        stack[sp++] = 0;
+        boolean entering = true;
+        while (sp > 0) {
+            int b = stack[sp - 1];
+            if (entering) {
+                mark[b] = log;
+                visitBlock(b);
+            }
+            if (next[b] < dominators.childCount(b)) {
+                stack[sp++] = dominators.child(b, next[b]++);
+                entering = true;
+            } else {
+                undo(mark[b]);
+                sp--;
+                entering = false;
+            }
+        }
+    }
+
+    private void visitBlock(int b) {
+        for (int p = ssa.phiStart(b); p < ssa.phiEnd(b); p++) {
+            int value = ssa.phiValue(p);
+            number[value] = phiNumber(b, p);
+            assign(ssa.phiVariable(p), value);
+        }
+        for (int i = cfg.start(b); i < cfg.end(b); i++) {
+            int op = ir.op(i);
+            long a = propagateCopy(i, ir.a(i), ssa.useA(i), true);
+            long b2 = propagateCopy(i, ir.b(i), ssa.useB(i), false);
+            int def = ssa.defValue(i);
+            if (def == SsaForm.NO_VALUE) continue;
+            int dst = Operand.payload(ir.dst(i));
+            if (op == IrOp.COPY) {
+                number[def] = Operand.isConstant(a) ? def : number[ssa.useA(i)];
+                if (a == ir.dst(i)) ir.nop(i);
+            } else if (IrOp.isBinary(op)) {
+                long ka = key(a, ssa.useA(i));
+                long kb = key(b2, ssa.useB(i));
+                if (op == IrOp.ADD && ka > kb) {
+                    long t = ka;
+                    ka = kb;
+                    kb = t;
+                }
+                int slot = find(op, ka, kb);
+                int earlier = leader[slot];
+                if (earlier != NONE && holds(earlier)) {
+                    number[def] = earlier;
+                    int var = ssa.variable(earlier);
+                    if (var == dst) {
+                        ir.nop(i);
+                    } else {
+                        ir.set(i, IrOp.COPY, ir.dst(i), ir.variableOperand(var), Operand.NONE);
+                    }
+                } else {
+                    number[def] = def;
+                    setLeader(slot, op, ka, kb, def);
+                }
+            } else {
+                number[def] = def;
+            }
+            assign(dst, def);
+        }
+    }
+
+    /**
+     * A phi's arguments that are already numbered and all the same give it
+     * that number; anything else (such as a back edge) makes it new.
+     */
+    private int phiNumber(int block, int phi) {
+        int same = (block == 0) ? number[ssa.phiVariable(phi)] : NONE;
+        for (int k = 0; k < cfg.predecessorCount(block); k++) {
+            int arg = ssa.phiArg(phi, k);
+            int n = (arg == SsaForm.NO_VALUE) ? NONE : number[arg];
+            if (n == NONE || (same != NONE && n != same)) return ssa.phiValue(phi);
+            same = n;
+        }
+        return (same == NONE) ? ssa.phiValue(phi) : same;
+    }
+
+    /**
+     * Replaces a variable operand by the variable holding its leader, if
+     * that is a different one. Returns the operand now in place.
+     */
+    private long propagateCopy(int i, long operand, int value, boolean isA) {
+        if (!Operand.isVariable(operand)) return operand;
+        int first = number[value];
+        int var = ssa.variable(first);
+        if (first == value || var == Operand.payload(operand) || !holds(first)) return operand;
+        long replacement = ir.variableOperand(var);
+        if (isA) {
+            ir.setA(i, replacement);
+        } else {
+            ir.setB(i, replacement);
+        }
+        return replacement;
+    }
+
+    /**
+     * Whether the variable of leader value {@code first} currently holds
+     * a value with the same number.
+     */
+    private boolean holds(int first) {
+        return number[current[ssa.variable(first)]] == first;
+    }
+
+    private long key(long operand, int value) {
+        // Constants keep their own tag; everything else is keyed by value number
+        return Operand.isConstant(operand) ? operand : number[value];
+    }
+
+    // helpers
+
+    private int find(int op, long a, long b) {
+        int h = (int) ((op * 31 + a) * 0x9E3779B97F4A7C15L + b) * 0x9E3779B9;
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (keyOp[slot] != NONE
+                && (keyOp[slot] != op || keyA[slot] != a || keyB[slot] != b)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void setLeader(int slot, int op, long a, long b, int value) {
+        keyOp[slot] = op;
+        keyA[slot] = a;
+        keyB[slot] = b;
+        record(-(slot + 1), leader[slot]);
+        leader[slot] = value;
+    }
+
+    private void assign(int var, int value) {
+        record(var, current[var]);
+        current[var] = value;
+    }
+
+    private void record(int what, int old) {
+        if (log == logWhat.length) {
+            logWhat = Arrays.copyOf(logWhat, log * 2);
+            logOld = Arrays.copyOf(logOld, log * 2);
+        }
+        logWhat[log] = what;
+        logOld[log++] = old;
+    }
+
+    private void undo(int to) {
+        while (log > to) {
+            log--;
+            int what = logWhat[log];
+            if (what >= 0) {
+                current[what] = logOld[log];
+            } else {
+                leader[-(what + 1)] = logOld[log];
+            }
+        }
+    }
+}
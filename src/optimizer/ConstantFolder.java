@@ -1,48 +1,34 @@
 package optimizer;
 
 import icg.Quadruple;
-import java.util.ArrayList;
+import ir.IrOp;
+import ir.IrProgram;
+import ir.Operand;
+
 import java.util.List;
 
 public class ConstantFolder {
 
     public List<Quadruple> foldConstants(List<Quadruple> code) {
-        List<Quadruple> optimized = new ArrayList<>();
+        return foldConstants(IrProgram.fromQuads(code)).toQuads();
+    }
 
-        for (Quadruple q : code) {
-            String op = q.op();
-            String a1 = q.arg1();
-            String a2 = q.arg2();
-            String res = q.result();
+    /**
+     * Replaces every binary operation on two constants with a copy of its
+     * value, in place. Returns {@code code}.
+     */
+    public IrProgram foldConstants(IrProgram code) {
+        for (int i = 0, n = code.size(); i < n; i++) {
+            int op = code.op(i);
+            long a = code.a(i);
+            long b = code.b(i);
 
             // Check if both arguments are constants (numbers)
-            if (isNumeric(a1) && isNumeric(a2) && (op.equals("+") || op.equals("-") || op.equals("*") || op.equals("<"))) {
-                int val1 = Integer.parseInt(a1);
-                int val2 = Integer.parseInt(a2);
-                int foldedValue = switch (op) {
-                    case "+" -> val1 + val2;
-                    case "-" -> val1 - val2;
-                    case "*" -> val1 * val2;
-                    case "<" -> (val1 < val2) ? 1 : 0;
-                    default -> 0;
-                };
-
-                optimized.add(new Quadruple("=", String.valueOf(foldedValue), null, res));
-            } else {
-                optimized.add(q);
+            if (IrOp.isBinary(op) && Operand.isConstant(a) && Operand.isConstant(b)) {
+                int foldedValue = IrOp.fold(op, Operand.payload(a), Operand.payload(b));
+                code.set(i, IrOp.COPY, code.dst(i), Operand.constant(foldedValue), Operand.NONE);
             }
         }
-
-        return optimized;
-    }
-
-    private boolean isNumeric(String s) {
-        if (s == null) return false;
-        try {
-            Integer.parseInt(s);
-            return true;
-        } catch (NumberFormatException e) {
-            return false;
-        }
+        return code;
     }
 }
@@ -0,0 +1,312 @@
+package optimizer;
+
+import icg.Quadruple;
+import ir.IrOp;
+import ir.IrProgram;
+import ir.Operand;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sparse conditional constant propagation (Wegman and Zadeck) over
+ * {@link SsaForm}.
+ *
+ * Values start out unknown and blocks unreached. Starting from the entry,
+ * only blocks that some already-executable edge leads to are evaluated,
+ * and a conditional jump on a known constant only makes its taken edge
+ * executable, so constants flowing around a loop or out of a decided
+ * {@code if} are found even when they pass through a phi. Afterwards:
+ * <ul>
+ * <li>operands that are constants are replaced by them, and instructions
+ * computing a constant become copies of it;</li>
+ * <li>IFZ/IFNZ on a constant becomes a GOTO or disappears;</li>
+ * <li>blocks that can never execute are deleted.</li>
+ * </ul>
+ * Copies left dead by this are for {@link DeadCodeEliminator} to remove.
+ */
+public class ConstantPropagator {
+
+    // Lattice states
+    private static final byte UNKNOWN = 0;
+    private static final byte CONSTANT = 1;
+    private static final byte VARYING = 2;
+
+    private SsaForm ssa;
+    private IrProgram ir;
+    private ControlFlowGraph cfg;
+    private byte[] state;
+    private int[] constant;
+    private int[] edgeStart;      // block -> index of its first outgoing edge
+    private boolean[] edgeExecutable;
+    private boolean[] blockExecutable;
+    private int[] flowWork;       // newly executable edges; -1 is the entry
+    private int flowCount;
+    private int[] valueWork;
+    private int valueCount;
+    private boolean[] valueQueued;
+
+    public List<Quadruple> propagate(List<Quadruple> code) {
+        return propagate(IrProgram.fromQuads(code)).toQuads();
+    }
+
+    /**
+     * Propagates constants in place. Returns {@code code}.
+     */
+    public IrProgram propagate(IrProgram code) {
+        if (code.size() == 0) return code;
+        ir = code;
+        cfg = new ControlFlowGraph(code);
+        ssa = new SsaForm(new DominatorTree(cfg), new Liveness(cfg));
+        solve();
+        rewrite();
+        code.compact();
+        ssa = null;
+        cfg = null;
+        ir = null;
+        return code;
+    }
+
+    private void solve() {
+        int n = cfg.blockCount();
+        state = new byte[ssa.valueCount()];
+        constant = new int[ssa.valueCount()];
+        // Every variable starts out as zero
+        for (int v = 0; v < ssa.valueCount(); v++) {
+            if (ssa.isEntryValue(v)) state[v] = CONSTANT;
+        }
+        edgeStart = new int[n + 1];
+        for (int b = 0; b < n; b++) edgeStart[b + 1] = edgeStart[b] + cfg.successorCount(b);
+        edgeExecutable = new boolean[edgeStart[n]];
+        blockExecutable = new boolean[n];
+        flowWork = new int[edgeStart[n] + 1];
+        valueWork = new int[16];
+        valueQueued = new boolean[ssa.valueCount()];
+
+        flowWork[flowCount++] = -1;
+        while (flowCount > 0 || valueCount > 0) {
+            while (flowCount > 0) {
+                int edge = flowWork[--flowCount];
+                int block;
+                if (edge < 0) {
+                    block = 0;
+                } else {
+                    int from = sourceOf(edge);
+                    block = cfg.successor(from, edge - edgeStart[from]);
+                }
+                for (int p = ssa.phiStart(block); p < ssa.phiEnd(block); p++) {
+                    visitPhi(block, p);
+                }
+                if (!blockExecutable[block]) {
+                    blockExecutable[block] = true;
+                    for (int i = cfg.start(block); i < cfg.end(block); i++) {
+                        visit(i);
+                    }
+                    if (!IrOp.isJump(ir.op(cfg.end(block) - 1))) {
+                        fallThrough(block);
+                    }
+                }
+            }
+            while (valueCount > 0 && flowCount == 0) {
+                int value = valueWork[--valueCount];
+                valueQueued[value] = false;
+                for (int user : ssa.users(value)) {
+                    if (user < 0) {
+                        int phi = -(user + 1);
+                        int block = blockOfPhi(phi);
+                        if (blockExecutable[block]) visitPhi(block, phi);
+                    } else if (blockExecutable[cfg.blockOf(user)]) {
+                        visit(user);
+                    }
+                }
+            }
+        }
+    }
+
+    private void visitPhi(int block, int phi) {
+        byte s = UNKNOWN;
+        int c = 0;
+        if (block == 0) {
+            // Control also enters from outside the program, with the initial value
+            int entry = ssa.phiVariable(phi);
+            s = state[entry];
+            c = constant[entry];
+        }
+        for (int k = 0; k < cfg.predecessorCount(block); k++) {
+            int pred = cfg.predecessor(block, k);
+            if (!edgeExecutable[edgeIndex(pred, block)]) continue;
+            int arg = ssa.phiArg(phi, k);
+            if (arg == SsaForm.NO_VALUE || state[arg] == UNKNOWN) continue;
+            if (state[arg] == VARYING || (s == CONSTANT && constant[arg] != c)) {
+                s = VARYING;
+                break;
+            }
+            s = CONSTANT;
+            c = constant[arg];
+        }
+        lower(ssa.phiValue(phi), s, c);
+    }
+
+    private void visit(int i) {
+        int op = ir.op(i);
+        switch (op) {
+            case IrOp.COPY: {
+                long a = ir.a(i);
+                if (Operand.isConstant(a)) {
+                    lower(ssa.defValue(i), CONSTANT, Operand.payload(a));
+                } else {
+                    int v = ssa.useA(i);
+                    lower(ssa.defValue(i), state[v], constant[v]);
+                }
+                break;
+            }
+            case IrOp.ADD:
+            case IrOp.SUB:
+            case IrOp.LT: {
+                byte sa = stateOf(ir.a(i), ssa.useA(i));
+                byte sb = stateOf(ir.b(i), ssa.useB(i));
+                if (sa == VARYING || sb == VARYING) {
+                    lower(ssa.defValue(i), VARYING, 0);
+                } else if (sa == CONSTANT && sb == CONSTANT) {
+                    int folded = IrOp.fold(op, valueOf(ir.a(i), ssa.useA(i)), valueOf(ir.b(i), ssa.useB(i)));
+                    lower(ssa.defValue(i), CONSTANT, folded);
+                }
+                break;
+            }
+            case IrOp.READ:
+                lower(ssa.defValue(i), VARYING, 0);
+                break;
+            case IrOp.IFZ:
+            case IrOp.IFNZ: {
+                int block = cfg.blockOf(i);
+                byte s = stateOf(ir.a(i), ssa.useA(i));
+                if (s == VARYING) {
+                    jump(block, ir.b(i));
+                    fallThrough(block);
+                } else if (s == CONSTANT) {
+                    boolean zero = valueOf(ir.a(i), ssa.useA(i)) == 0;
+                    if (zero == (op == IrOp.IFZ)) {
+                        jump(block, ir.b(i));
+                    } else {
+                        fallThrough(block);
+                    }
+                }
+                break;
+            }
+            case IrOp.GOTO:
+                jump(cfg.blockOf(i), ir.a(i));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void rewrite() {
+        for (int b = 0; b < cfg.blockCount(); b++) {
+            if (!blockExecutable[b]) {
+                for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                    ir.nop(i);
+                }
+                continue;
+            }
+            for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                int op = ir.op(i);
+                int def = ssa.defValue(i);
+                if (def != SsaForm.NO_VALUE && op != IrOp.READ && state[def] == CONSTANT) {
+                    ir.set(i, IrOp.COPY, ir.dst(i), Operand.constant(constant[def]), Operand.NONE);
+                    continue;
+                }
+                int ua = ssa.useA(i);
+                if (ua != SsaForm.NO_VALUE && state[ua] == CONSTANT) {
+                    ir.setA(i, Operand.constant(constant[ua]));
+                }
+                int ub = ssa.useB(i);
+                if (ub != SsaForm.NO_VALUE && state[ub] == CONSTANT) {
+                    ir.setB(i, Operand.constant(constant[ub]));
+                }
+                if ((op == IrOp.IFZ || op == IrOp.IFNZ) && Operand.isConstant(ir.a(i))) {
+                    boolean zero = Operand.payload(ir.a(i)) == 0;
+                    if (zero == (op == IrOp.IFZ)) {
+                        ir.set(i, IrOp.GOTO, Operand.NONE, ir.b(i), Operand.NONE);
+                    } else {
+                        ir.nop(i);
+                    }
+                }
+            }
+        }
+    }
+
+    // helpers
+
+    private void lower(int value, byte s, int c) {
+        if (s == UNKNOWN || state[value] == VARYING) return;
+        if (state[value] == CONSTANT) {
+            if (s == CONSTANT && constant[value] == c) return;
+            s = VARYING;
+        }
+        state[value] = s;
+        constant[value] = c;
+        if (!valueQueued[value]) {
+            valueQueued[value] = true;
+            if (valueCount == valueWork.length) {
+                valueWork = Arrays.copyOf(valueWork, valueCount * 2);
+            }
+            valueWork[valueCount++] = value;
+        }
+    }
+
+    private byte stateOf(long operand, int value) {
+        return Operand.isConstant(operand) ? CONSTANT : state[value];
+    }
+
+    private int valueOf(long operand, int value) {
+        return Operand.isConstant(operand) ? Operand.payload(operand) : constant[value];
+    }
+
+    private void jump(int block, long label) {
+        addEdge(block, cfg.blockOfLabel(Operand.payload(label)));
+    }
+
+    private void fallThrough(int block) {
+        if (block + 1 < cfg.blockCount()) {
+            addEdge(block, block + 1);
+        }
+    }
+
+    private void addEdge(int from, int to) {
+        int edge = edgeIndex(from, to);
+        if (!edgeExecutable[edge]) {
+            // Marked now so each edge is queued once; its phis are visited when it is taken off
+            edgeExecutable[edge] = true;
+            flowWork[flowCount++] = edge;
+        }
+    }
+
+    private int edgeIndex(int from, int to) {
+        for (int e = edgeStart[from]; e < edgeStart[from + 1]; e++) {
+            if (cfg.successor(from, e - edgeStart[from]) == to) return e;
+        }
+        throw new IllegalStateException("No edge " + from + " -> " + to);
+    }
+
+    private int sourceOf(int edge) {
+        // Binary search for the block whose edges include this index
+        int lo = 0;
+        int hi = cfg.blockCount() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (edgeStart[mid] <= edge) lo = mid; else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private int blockOfPhi(int phi) {
+        int lo = 0;
+        int hi = cfg.blockCount() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (ssa.phiStart(mid) <= phi) lo = mid; else hi = mid - 1;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,187 @@
+package optimizer;
+
+import ir.IrOp;
+import ir.IrProgram;
+import ir.Operand;
+
+import java.util.Arrays;
+
+/**
+ * Splits an {@link IrProgram} into basic blocks and links them by
+ * control-flow edges.
+ *
+ * A block starts at the first instruction, at every LABEL and after every
+ * jump, and covers the instructions up to the next such point. Its
+ * successors are the target of a jump that ends it and, unless it ends in
+ * a GOTO, the block after it. Block 0 is the entry; a block that falls off
+ * the end of the program has no successors.
+ *
+ * Blocks are numbered in program order and described by int arrays rather
+ * than objects; successors and predecessors are kept in compressed
+ * (offset + flat array) lists. Building the graph is linear in the size of
+ * the program.
+ */
+public final class ControlFlowGraph {
+
+    private final IrProgram program;
+    private final int blockCount;
+    private final int[] starts;      // first instruction of each block, plus size() at the end
+    private final int[] blockOf;     // instruction -> block
+    private final int[] labelBlocks; // label ID -> block, or -1
+    private final int[] succStart;
+    private final int[] succs;
+    private final int[] predStart;
+    private final int[] preds;
+
+    public ControlFlowGraph(IrProgram program) {
+        this.program = program;
+        int n = program.size();
+
+        // Leaders
+        boolean[] leader = new boolean[n + 1];
+        leader[0] = true;
+        for (int i = 0; i < n; i++) {
+            int op = program.op(i);
+            if (op == IrOp.LABEL) {
+                leader[i] = true;
+            } else if (IrOp.isJump(op)) {
+                leader[i + 1] = true;
+            }
+        }
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (leader[i]) count++;
+        }
+        blockCount = count;
+        starts = new int[count + 1];
+        blockOf = new int[n];
+        labelBlocks = new int[program.labelCount()];
+        Arrays.fill(labelBlocks, -1);
+        for (int i = 0, b = -1; i < n; i++) {
+            if (leader[i]) starts[++b] = i;
+            blockOf[i] = b;
+            if (program.op(i) == IrOp.LABEL) {
+                labelBlocks[Operand.payload(program.a(i))] = b;
+            }
+        }
+        starts[count] = n;
+
+        // Successors: at most a jump target and a fall-through each
+        succStart = new int[count + 1];
+        int[] edges = new int[2 * count];
+        int e = 0;
+        for (int b = 0; b < count; b++) {
+            succStart[b] = e;
+            int last = starts[b + 1] - 1;
+            int op = program.op(last);
+            if (IrOp.isJump(op)) {
+                long target = (op == IrOp.GOTO) ? program.a(last) : program.b(last);
+                int t = labelBlocks[Operand.payload(target)];
+                if (t < 0) {
+                    throw new IllegalStateException("Jump to undefined label " + program.text(target) + ".");
+                }
+                edges[e++] = t;
+            }
+            if (op != IrOp.GOTO && b + 1 < count) {
+                // IFZ L / L: jumps and falls through to the same block; keep one edge
+                if (e == succStart[b] || edges[e - 1] != b + 1) {
+                    edges[e++] = b + 1;
+                }
+            }
+        }
+        succStart[count] = e;
+        succs = Arrays.copyOf(edges, e);
+
+        // Predecessors, by counting sort on the target
+        predStart = new int[count + 1];
+        for (int s : succs) predStart[s + 1]++;
+        for (int b = 0; b < count; b++) predStart[b + 1] += predStart[b];
+        preds = new int[e];
+        int[] fill = Arrays.copyOf(predStart, count);
+        for (int b = 0; b < count; b++) {
+            for (int k = succStart[b]; k < succStart[b + 1]; k++) {
+                preds[fill[succs[k]]++] = b;
+            }
+        }
+    }
+
+    public IrProgram program() {
+        return program;
+    }
+
+    public int blockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Index of the block's first instruction.
+     */
+    public int start(int block) {
+        return starts[block];
+    }
+
+    /**
+     * Index one past the block's last instruction.
+     */
+    public int end(int block) {
+        return starts[block + 1];
+    }
+
+    public int blockOf(int instruction) {
+        return blockOf[instruction];
+    }
+
+    /**
+     * The block a label starts, or -1 if the label is not placed.
+     */
+    public int blockOfLabel(int labelId) {
+        return (labelId < labelBlocks.length) ? labelBlocks[labelId] : -1;
+    }
+
+    public int successorCount(int block) {
+        return succStart[block + 1] - succStart[block];
+    }
+
+    public int successor(int block, int k) {
+        return succs[succStart[block] + k];
+    }
+
+    public int predecessorCount(int block) {
+        return predStart[block + 1] - predStart[block];
+    }
+
+    public int predecessor(int block, int k) {
+        return preds[predStart[block] + k];
+    }
+
+    /**
+     * Blocks reachable from the entry, in reverse postorder of a depth-first
+     * search: every block comes before its successors except along back
+     * edges, which is the order forward dataflow problems converge fastest in.
+     */
+    public int[] reversePostorder() {
+        int[] order = new int[blockCount];
+        if (blockCount == 0) return order;
+        int[] stack = new int[blockCount];
+        int[] next = new int[blockCount]; // next successor to visit
+        boolean[] visited = new boolean[blockCount];
+        int sp = 0;
+        int pos = blockCount;
+        stack[sp++] = 0;
+        visited[0] = true;
+        while (sp > 0) {
+            int b = stack[sp - 1];
+            if (next[b] < successorCount(b)) {
+                int s = successor(b, next[b]++);
+                if (!visited[s]) {
+                    visited[s] = true;
+                    stack[sp++] = s;
+                }
+            } else {
+                order[--pos] = b;
+                sp--;
+            }
+        }
+        return Arrays.copyOfRange(order, pos, blockCount);
+    }
+}
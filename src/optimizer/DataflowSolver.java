@@ -0,0 +1,134 @@
+package optimizer;
+
+import java.util.BitSet;
+
+/**
+ * Iterative worklist solver for bit-vector dataflow problems over a
+ * {@link ControlFlowGraph}.
+ *
+ * A problem is described by a gen and a kill set per block; the transfer
+ * function is {@code gen | (x & ~kill)}. Forward problems flow from
+ * predecessors' outs to a block's in, backward problems from successors'
+ * ins to a block's out. Blocks are processed in reverse postorder (forward)
+ * or postorder (backward), so acyclic regions settle in one sweep and loops
+ * only revisit the blocks whose inputs actually changed.
+ */
+public final class DataflowSolver {
+
+    public enum Direction { FORWARD, BACKWARD }
+
+    public enum Meet { UNION, INTERSECTION }
+
+    /**
+     * The fixed point: the facts at the start and end of each block.
+     */
+    public record Result(BitSet[] in, BitSet[] out) {
+        public BitSet in(int block) {
+            return in[block];
+        }
+
+        public BitSet out(int block) {
+            return out[block];
+        }
+    }
+
+    private DataflowSolver() {
+    }
+
+    /**
+     * @param width    number of bits in the lattice
+     * @param boundary the facts entering the entry block (forward) or
+     *                 leaving blocks without successors (backward)
+     */
+    public static Result solve(ControlFlowGraph cfg, Direction direction, Meet meet, int width,
+                               BitSet[] gen, BitSet[] kill, BitSet boundary) {
+        int n = cfg.blockCount();
+        boolean forward = (direction == Direction.FORWARD);
+        BitSet[] in = new BitSet[n];
+        BitSet[] out = new BitSet[n];
+        // Start from the top of the lattice so the solution is the maximal fixed point
+        for (int b = 0; b < n; b++) {
+            in[b] = new BitSet(width);
+            out[b] = new BitSet(width);
+            if (meet == Meet.INTERSECTION) {
+                (forward ? out : in)[b].set(0, width);
+            }
+        }
+
+        int[] order = visitOrder(cfg, forward);
+        int[] queue = new int[n];
+        boolean[] queued = new boolean[n];
+        int head = 0;
+        int count = n;
+        for (int i = 0; i < n; i++) {
+            queue[i] = order[i];
+            queued[order[i]] = true;
+        }
+
+        while (count > 0) {
+            int b = queue[head];
+            head = (head + 1 == n) ? 0 : head + 1;
+            count--;
+            queued[b] = false;
+
+            // Meet over the neighbours facts flow in from
+            BitSet[] from = forward ? out : in;
+            int neighbours = forward ? cfg.predecessorCount(b) : cfg.successorCount(b);
+            BitSet joined;
+            if (neighbours == 0) {
+                joined = (BitSet) boundary.clone();
+            } else {
+                joined = (BitSet) from[forward ? cfg.predecessor(b, 0) : cfg.successor(b, 0)].clone();
+                for (int k = 1; k < neighbours; k++) {
+                    int p = forward ? cfg.predecessor(b, k) : cfg.successor(b, k);
+                    if (meet == Meet.UNION) joined.or(from[p]); else joined.and(from[p]);
+                }
+                if (forward && b == 0) {
+                    // The entry is also reached from outside the program
+                    if (meet == Meet.UNION) joined.or(boundary); else joined.and(boundary);
+                }
+            }
+
+            // Transfer
+            BitSet result = (BitSet) joined.clone();
+            result.andNot(kill[b]);
+            result.or(gen[b]);
+
+            BitSet[] into = forward ? in : out;
+            BitSet[] produced = forward ? out : in;
+            into[b] = joined;
+            if (!result.equals(produced[b])) {
+                produced[b] = result;
+                int dependents = forward ? cfg.successorCount(b) : cfg.predecessorCount(b);
+                for (int k = 0; k < dependents; k++) {
+                    int s = forward ? cfg.successor(b, k) : cfg.predecessor(b, k);
+                    if (!queued[s]) {
+                        queued[s] = true;
+                        queue[(head + count) % n] = s;
+                        count++;
+                    }
+                }
+            }
+        }
+        return new Result(in, out);
+    }
+
+    /**
+     * Every block once: reachable ones in (reverse) postorder, then the rest.
+     */
+    private static int[] visitOrder(ControlFlowGraph cfg, boolean forward) {
+        int n = cfg.blockCount();
+        int[] rpo = cfg.reversePostorder();
+        int[] order = new int[n];
+        boolean[] listed = new boolean[n];
+        for (int i = 0; i < rpo.length; i++) {
+            order[i] = forward ? rpo[i] : rpo[rpo.length - 1 - i];
+            listed[order[i]] = true;
+        }
+        int k = rpo.length;
+        for (int b = 0; b < n; b++) {
+            if (!listed[b]) order[k++] = b;
+        }
+        return order;
+    }
+}
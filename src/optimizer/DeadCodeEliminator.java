@@ -1,39 +1,172 @@
 package optimizer;
 
 import icg.Quadruple;
-import java.util.*;
+import ir.IrOp;
+import ir.IrProgram;
+import ir.Operand;
 
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Removes assignments whose value never reaches anything the program does.
+ *
+ * One mark and one sweep: PRINT, READ and the conditions of IFZ/IFNZ are
+ * needed, as is every assignment whose value one of them may read, and so
+ * on back along each def-use chain. Every assignment left unmarked is
+ * removed in a single compaction, including chains that span blocks and
+ * values only ever read by their own dead updates, as in a counter nothing
+ * prints. READ is always kept, since it consumes input.
+ *
+ * The assignments an operand may read are found on demand rather than
+ * from {@link ReachingDefinitions}: a value wanted on entry to a block is
+ * looked up at the end of each predecessor, and wanted on entry to the
+ * predecessor in turn if it does not assign the variable. Each block and
+ * variable is followed once, so the cost is the size of the code plus the
+ * extent of the values actually needed, where solving bit vectors costs
+ * blocks times definitions.
+ */
 public class DeadCodeEliminator {
 
+    private ControlFlowGraph cfg;
+    private int[] defStart;      // block -> its last assignments at [defStart[b], defStart[b + 1])
+    private int[] defVariable;   // ... sorted by the variable assigned
+    private int[] defInstruction;
+    private boolean[] needed;
+    private int[] work;          // marked instructions whose operands are not yet followed
+    private int top;
+    private BitSet[] wanted;     // variable -> blocks it is wanted on entry to, or null
+    private int[] entryBlock;    // of those, the ones not yet followed
+    private int[] entryVariable;
+    private int entryTop;
+
     public List<Quadruple> eliminateDeadCode(List<Quadruple> code) {
-        Set<String> live = new HashSet<>();
+        return eliminateDeadCode(IrProgram.fromQuads(code)).toQuads();
+    }
 
-        // Step 1: Find the final "live" results
-        for (Quadruple q : code) {
-            if (q.op().equals("PRINT") || q.op().equals("READ")) {
-                if (q.arg1() != null) live.add(q.arg1());
+    /**
+     * Removes dead assignments in place. Returns {@code code}.
+     */
+    public IrProgram eliminateDeadCode(IrProgram code) {
+        int n = code.size();
+        if (n == 0) return code;
+        cfg = new ControlFlowGraph(code);
+        int blocks = cfg.blockCount();
+
+        // The assignment in the same block each operand reads, or -1 if it
+        // reads the value the block was entered with
+        int[] localA = new int[n];
+        int[] localB = new int[n];
+        int[] lastDef = new int[code.variableCount()];
+        Arrays.fill(lastDef, -1);
+        defStart = new int[blocks + 1];
+        defVariable = new int[n];
+        defInstruction = new int[n];
+        int defs = 0;
+        for (int b = 0; b < blocks; b++) {
+            for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                localA[i] = localDefinition(lastDef, code.a(i));
+                localB[i] = localDefinition(lastDef, code.b(i));
+                if (IrOp.definesDst(code.op(i))) {
+                    int v = Operand.payload(code.dst(i));
+                    if (lastDef[v] < 0) defVariable[defs++] = v;
+                    lastDef[v] = i;
+                }
+            }
+            Arrays.sort(defVariable, defStart[b], defs);
+            for (int k = defStart[b]; k < defs; k++) {
+                defInstruction[k] = lastDef[defVariable[k]];
+                lastDef[defVariable[k]] = -1;
             }
+            defStart[b + 1] = defs;
         }
 
-        // Step 2: Traverse backward and collect only instructions that affect live vars
-        List<Quadruple> optimized = new ArrayList<>();
-
-        for (int i = code.size() - 1; i >= 0; i--) {
-            Quadruple q = code.get(i);
-            String res = q.result();
-
-            if (res != null && live.contains(res)) {
-                optimized.add(q);
-                if (q.arg1() != null) live.add(q.arg1());
-                if (q.arg2() != null) live.add(q.arg2());
-            } else if (q.op().equals("PRINT") || q.op().equals("READ") || q.op().startsWith("LABEL") || q.op().startsWith("IFZ") || q.op().startsWith("GOTO")) {
-                optimized.add(q); // Keep control flow and I/O
-                if (q.arg1() != null) live.add(q.arg1());
-                if (q.arg2() != null) live.add(q.arg2());
+        // Mark backward from what has to stay
+        needed = new boolean[n];
+        work = new int[n];
+        top = 0;
+        wanted = new BitSet[code.variableCount()];
+        entryBlock = new int[16];
+        entryVariable = new int[16];
+        entryTop = 0;
+        for (int i = 0; i < n; i++) {
+            int op = code.op(i);
+            if (op == IrOp.PRINT || op == IrOp.READ || op == IrOp.IFZ || op == IrOp.IFNZ) need(i);
+        }
+        while (top > 0 || entryTop > 0) {
+            if (top > 0) {
+                int i = work[--top];
+                follow(code.a(i), localA[i], i);
+                follow(code.b(i), localB[i], i);
+                continue;
+            }
+            entryTop--;
+            int b = entryBlock[entryTop];
+            int v = entryVariable[entryTop];
+            for (int k = 0; k < cfg.predecessorCount(b); k++) {
+                int p = cfg.predecessor(b, k);
+                int d = Arrays.binarySearch(defVariable, defStart[p], defStart[p + 1], v);
+                if (d >= 0) {
+                    need(defInstruction[d]);
+                } else {
+                    want(p, v);
+                }
             }
         }
 
-        Collections.reverse(optimized);
-        return optimized;
+        // Sweep
+        for (int i = 0; i < n; i++) {
+            if (!needed[i] && IrOp.definesDst(code.op(i))) code.nop(i);
+        }
+        code.compact();
+
+        cfg = null;
+        defStart = null;
+        defVariable = null;
+        defInstruction = null;
+        needed = null;
+        work = null;
+        wanted = null;
+        entryBlock = null;
+        entryVariable = null;
+        return code;
+    }
+
+    /**
+     * Marks what instruction {@code at} reads {@code operand} from: the
+     * assignment {@code local} in its own block, or else whatever reaches
+     * the block's entry.
+     */
+    private void follow(long operand, int local, int at) {
+        if (!Operand.isVariable(operand)) return;
+        if (local >= 0) {
+            need(local);
+        } else {
+            want(cfg.blockOf(at), Operand.payload(operand));
+        }
+    }
+
+    private void need(int instruction) {
+        if (needed[instruction]) return;
+        needed[instruction] = true;
+        work[top++] = instruction;
+    }
+
+    private void want(int block, int variable) {
+        if (wanted[variable] == null) wanted[variable] = new BitSet();
+        if (wanted[variable].get(block)) return;
+        wanted[variable].set(block);
+        if (entryTop == entryBlock.length) {
+            entryBlock = Arrays.copyOf(entryBlock, entryTop * 2);
+            entryVariable = Arrays.copyOf(entryVariable, entryTop * 2);
+        }
+        entryBlock[entryTop] = block;
+        entryVariable[entryTop] = variable;
+        entryTop++;
+    }
+
+    private static int localDefinition(int[] lastDef, long operand) {
+        return Operand.isVariable(operand) ? lastDef[Operand.payload(operand)] : -1;
     }
 }
@@ -0,0 +1,267 @@
+package optimizer;
+
+import java.util.Arrays;
+
+/**
+ * Immediate dominators of a {@link ControlFlowGraph}, computed with the
+ * Lengauer-Tarjan algorithm (path compression, no balancing), which is
+ * near-linear in the number of edges.
+ *
+ * The depth-first search and the path compression are iterative, so very
+ * deep graphs (long chains of nested loops or ifs) cannot overflow the
+ * Java stack. Blocks not reachable from the entry have no dominator and
+ * are not in the tree.
+ */
+public final class DominatorTree {
+
+    private final ControlFlowGraph cfg;
+    private final int[] idom;
+    private final int[] childStart;
+    private final int[] children;
+    private final int[] preorder;  // reachable blocks in dominator-tree preorder
+    private final int[] enter;     // preorder / postorder numbers for dominates()
+    private final int[] exit;
+    private final int[] depth;
+    private int[] frontierStart; // dominance frontiers, built on first use
+    private int[] frontiers;
+
+    public DominatorTree(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+        int n = cfg.blockCount();
+        idom = new int[n];
+        Arrays.fill(idom, -1);
+
+        // 1. Depth-first numbering from the entry
+        int[] dfnum = new int[n];
+        Arrays.fill(dfnum, -1);
+        int[] vertex = new int[n];
+        int[] parent = new int[n];
+        int reached = 0;
+        if (n > 0) {
+            int[] stack = new int[n];
+            int[] next = new int[n];
+            int sp = 0;
+            stack[sp++] = 0;
+            dfnum[0] = reached;
+            vertex[reached++] = 0;
+            parent[0] = -1;
+            while (sp > 0) {
+                int b = stack[sp - 1];
+                if (next[b] < cfg.successorCount(b)) {
+                    int s = cfg.successor(b, next[b]++);
+                    if (dfnum[s] < 0) {
+                        dfnum[s] = reached;
+                        vertex[reached++] = s;
+                        parent[s] = b;
+                        stack[sp++] = s;
+                    }
+                } else {
+                    sp--;
+                }
+            }
+        }
+
+        // 2. Semidominators, in reverse DFS order, with implicit idoms via buckets
+        int[] semi = dfnum.clone();
+        int[] ancestor = new int[n];
+        int[] label = new int[n];
+        Arrays.fill(ancestor, -1);
+        for (int b = 0; b < n; b++) label[b] = b;
+        int[] bucketHead = new int[n];
+        int[] bucketNext = new int[n];
+        Arrays.fill(bucketHead, -1);
+        int[] path = new int[n];
+
+        for (int i = reached - 1; i > 0; i--) {
+            int w = vertex[i];
+            for (int k = 0; k < cfg.predecessorCount(w); k++) {
+                int v = cfg.predecessor(w, k);
+                if (dfnum[v] < 0) continue; // unreachable predecessor
+                int u = eval(v, ancestor, label, semi, path);
+                if (semi[u] < semi[w]) semi[w] = semi[u];
+            }
+            int s = vertex[semi[w]];
+            bucketNext[w] = bucketHead[s];
+            bucketHead[s] = w;
+
+            int p = parent[w];
+            ancestor[w] = p;
+            for (int v = bucketHead[p]; v >= 0; v = bucketNext[v]) {
+                int u = eval(v, ancestor, label, semi, path);
+                idom[v] = (semi[u] < semi[v]) ? u : p;
+            }
+            bucketHead[p] = -1;
+        }
+
+        // 3. Turn relative dominators into immediate ones, in DFS order
+        for (int i = 1; i < reached; i++) {
+            int w = vertex[i];
+            if (idom[w] != vertex[semi[w]]) {
+                idom[w] = idom[idom[w]];
+            }
+        }
+
+        // Tree children, compressed
+        childStart = new int[n + 1];
+        for (int b = 0; b < n; b++) {
+            if (idom[b] >= 0) childStart[idom[b] + 1]++;
+        }
+        for (int b = 0; b < n; b++) childStart[b + 1] += childStart[b];
+        children = new int[childStart[n]];
+        int[] fill = Arrays.copyOf(childStart, n);
+        // Children end up in program order since blocks are visited in order
+        for (int b = 0; b < n; b++) {
+            if (idom[b] >= 0) children[fill[idom[b]]++] = b;
+        }
+
+        // Preorder and pre/post numbers for O(1) dominance queries
+        preorder = new int[reached];
+        enter = new int[n];
+        exit = new int[n];
+        depth = new int[n];
+        Arrays.fill(enter, -1);
+        if (reached > 0) {
+            int[] stack = new int[reached];
+            int[] next = new int[n];
+            int sp = 0;
+            int clock = 0;
+            int pre = 0;
+            stack[sp++] = 0;
+            enter[0] = clock++;
+            preorder[pre++] = 0;
+            while (sp > 0) {
+                int b = stack[sp - 1];
+                if (next[b] < childCount(b)) {
+                    int c = child(b, next[b]++);
+                    enter[c] = clock++;
+                    depth[c] = depth[b] + 1;
+                    preorder[pre++] = c;
+                    stack[sp++] = c;
+                } else {
+                    exit[b] = clock++;
+                    sp--;
+                }
+            }
+        }
+    }
+
+    public ControlFlowGraph cfg() {
+        return cfg;
+    }
+
+    /**
+     * The immediate dominator, or -1 for the entry and unreachable blocks.
+     */
+    public int idom(int block) {
+        return idom[block];
+    }
+
+    public boolean isReachable(int block) {
+        return enter[block] >= 0;
+    }
+
+    /**
+     * True if every path from the entry to {@code b} passes through
+     * {@code a}. A block dominates itself. Unreachable blocks dominate
+     * nothing and are dominated by nothing.
+     */
+    public boolean dominates(int a, int b) {
+        return enter[a] >= 0 && enter[b] >= 0 && enter[a] <= enter[b] && exit[b] <= exit[a];
+    }
+
+    public int childCount(int block) {
+        return childStart[block + 1] - childStart[block];
+    }
+
+    public int child(int block, int k) {
+        return children[childStart[block] + k];
+    }
+
+    /**
+     * Distance from the entry in the tree; 0 for the entry.
+     */
+    public int depth(int block) {
+        return depth[block];
+    }
+
+    /**
+     * The reachable blocks, each after its dominator.
+     */
+    public int[] preorder() {
+        return preorder.clone();
+    }
+
+    /**
+     * The blocks where {@code block}'s dominance ends: those it does not
+     * strictly dominate but that have a predecessor it dominates. These are
+     * where SSA form needs phi functions for values defined in {@code block}.
+     */
+    public int[] frontier(int block) {
+        if (frontiers == null) {
+            computeFrontiers();
+        }
+        return Arrays.copyOfRange(frontiers, frontierStart[block], frontierStart[block + 1]);
+    }
+
+    /**
+     * Cooper, Harvey and Kennedy's method: from each predecessor of a join
+     * point, walk up the tree to the join point's idom, adding the join point
+     * to every frontier on the way.
+     */
+    private void computeFrontiers() {
+        int n = cfg.blockCount();
+        int[] count = new int[n + 1];
+        int[] last = new int[n]; // last join point added, to skip duplicates
+        Arrays.fill(last, -1);
+        // Two passes over the same walk: count, then fill
+        for (int pass = 0; pass < 2; pass++) {
+            int[] fill = (pass == 1) ? Arrays.copyOf(frontierStart, n) : null;
+            Arrays.fill(last, -1);
+            for (int b = 0; b < n; b++) {
+                // The entry is also entered from outside, so one predecessor makes it a join
+                int joining = (b == 0) ? 1 : 2;
+                if (cfg.predecessorCount(b) < joining || !isReachable(b)) continue;
+                for (int k = 0; k < cfg.predecessorCount(b); k++) {
+                    int runner = cfg.predecessor(b, k);
+                    if (!isReachable(runner)) continue;
+                    while (runner != idom[b] && last[runner] != b) {
+                        last[runner] = b;
+                        if (pass == 0) {
+                            count[runner + 1]++;
+                        } else {
+                            frontiers[fill[runner]++] = b;
+                        }
+                        runner = idom[runner];
+                    }
+                }
+            }
+            if (pass == 0) {
+                for (int b = 0; b < n; b++) count[b + 1] += count[b];
+                frontierStart = count;
+                frontiers = new int[count[n]];
+            }
+        }
+    }
+
+    // helpers
+
+    private static int eval(int v, int[] ancestor, int[] label, int[] semi, int[] path) {
+        if (ancestor[v] < 0) {
+            return v;
+        }
+        // Compress the ancestor path of v, nearest-to-root first
+        int len = 0;
+        for (int x = v; ancestor[ancestor[x]] >= 0; x = ancestor[x]) {
+            path[len++] = x;
+        }
+        while (len > 0) {
+            int x = path[--len];
+            int a = ancestor[x];
+            if (semi[label[a]] < semi[label[x]]) {
+                label[x] = label[a];
+            }
+            ancestor[x] = ancestor[a];
+        }
+        return label[v];
+    }
+}
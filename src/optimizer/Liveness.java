@@ -0,0 +1,139 @@
+package optimizer;
+
+import ir.IrOp;
+import ir.IrProgram;
+import ir.Operand;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Which variables (and temps) may still be read later, at the start and end
+ * of every basic block.
+ *
+ * Only names that are read in some block before being written there can be
+ * live across a block boundary, so only those "global" names get a bit in
+ * the dataflow problem. The many temps that live inside one block cost
+ * nothing, which keeps the bit vectors small on large programs.
+ */
+public final class Liveness {
+
+    private final ControlFlowGraph cfg;
+    private final int[] globalIndex; // variable ID -> bit, or -1
+    private final int[] globals;     // bit -> variable ID
+    private final DataflowSolver.Result result;
+
+    public Liveness(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+        IrProgram ir = cfg.program();
+        int n = cfg.blockCount();
+
+        globalIndex = new int[ir.variableCount()];
+        Arrays.fill(globalIndex, -1);
+        globals = globalNames(cfg, globalIndex);
+
+        // use = read before written in the block, def = written in the block
+        BitSet[] use = new BitSet[n];
+        BitSet[] def = new BitSet[n];
+        for (int b = 0; b < n; b++) {
+            use[b] = new BitSet();
+            def[b] = new BitSet();
+            for (int i = cfg.end(b) - 1; i >= cfg.start(b); i--) {
+                int op = ir.op(i);
+                if (IrOp.definesDst(op)) {
+                    int g = globalIndex[Operand.payload(ir.dst(i))];
+                    if (g >= 0) {
+                        def[b].set(g);
+                        use[b].clear(g);
+                    }
+                }
+                addUse(use[b], ir.a(i));
+                addUse(use[b], ir.b(i));
+            }
+        }
+        result = DataflowSolver.solve(cfg, DataflowSolver.Direction.BACKWARD, DataflowSolver.Meet.UNION,
+                globals.length, use, def, new BitSet());
+    }
+
+    public ControlFlowGraph cfg() {
+        return cfg;
+    }
+
+    public boolean isLiveIn(int block, int variable) {
+        int g = globalIndex[variable];
+        return g >= 0 && result.in(block).get(g);
+    }
+
+    public boolean isLiveOut(int block, int variable) {
+        int g = globalIndex[variable];
+        return g >= 0 && result.out(block).get(g);
+    }
+
+    /**
+     * Adds the variables live at the end of {@code block} to {@code into},
+     * which is indexed by variable ID.
+     */
+    public void addLiveOut(int block, BitSet into) {
+        BitSet out = result.out(block);
+        for (int g = out.nextSetBit(0); g >= 0; g = out.nextSetBit(g + 1)) {
+            into.set(globals[g]);
+        }
+    }
+
+    /**
+     * Adds the variables live at the start of {@code block} to {@code into}.
+     */
+    public void addLiveIn(int block, BitSet into) {
+        BitSet in = result.in(block);
+        for (int g = in.nextSetBit(0); g >= 0; g = in.nextSetBit(g + 1)) {
+            into.set(globals[g]);
+        }
+    }
+
+    /**
+     * True if the variable can be live across some block boundary.
+     */
+    public boolean isGlobal(int variable) {
+        return globalIndex[variable] >= 0;
+    }
+
+    /**
+     * Numbers the variables read in some block before being written there,
+     * filling {@code indexOf} (variable ID to bit) and returning the inverse.
+     */
+    static int[] globalNames(ControlFlowGraph cfg, int[] indexOf) {
+        IrProgram ir = cfg.program();
+        BitSet written = new BitSet(ir.variableCount());
+        BitSet global = new BitSet(ir.variableCount());
+        for (int b = 0; b < cfg.blockCount(); b++) {
+            for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                exposed(ir.a(i), written, global);
+                exposed(ir.b(i), written, global);
+                if (IrOp.definesDst(ir.op(i))) {
+                    written.set(Operand.payload(ir.dst(i)));
+                }
+            }
+            written.clear();
+        }
+        int[] globals = new int[global.cardinality()];
+        int count = 0;
+        for (int v = global.nextSetBit(0); v >= 0; v = global.nextSetBit(v + 1)) {
+            indexOf[v] = count;
+            globals[count++] = v;
+        }
+        return globals;
+    }
+
+    private static void exposed(long operand, BitSet written, BitSet global) {
+        if (Operand.isVariable(operand) && !written.get(Operand.payload(operand))) {
+            global.set(Operand.payload(operand));
+        }
+    }
+
+    private void addUse(BitSet use, long operand) {
+        if (Operand.isVariable(operand)) {
+            int g = globalIndex[Operand.payload(operand)];
+            if (g >= 0) use.set(g);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package optimizer;
+
+import icg.Quadruple;
+import ir.IrOp;
+import ir.IrProgram;
+import ir.Operand;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Loop-invariant code motion over {@link NaturalLoops}, plus folding of
+ * induction variable updates.
+ *
+ * First, a computation into a single-use temp followed by a copy of that
+ * temp ({@code t = x + 1; x = t}, as TacGenerator emits for every
+ * assignment) becomes one instruction, {@code x = x + 1}. This turns each
+ * basic induction variable into a single in-loop update.
+ *
+ * Then, per loop and innermost first, a copy or arithmetic instruction is
+ * moved to a preheader in front of the header's LABEL when:
+ * <ul>
+ * <li>each operand is a constant, a variable the loop never assigns, or
+ * one assigned only by an instruction already being moved;</li>
+ * <li>it is the loop's only assignment to its destination, and the
+ * destination is not live on entry to the header, so every read in the
+ * loop sees this assignment;</li>
+ * <li>it runs on every path out of the loop, or its destination is dead
+ * wherever the loop exits to (the loop may run zero times).</li>
+ * </ul>
+ * Arithmetic cannot trap, so moving it ahead of the loop's test is safe.
+ * Jumps into the header from outside the loop go to the preheader instead.
+ * This repeats until nothing moves, so code can leave a whole loop nest
+ * one level at a time.
+ */
+public class LoopOptimizer {
+
+    private IrProgram ir;
+    private ControlFlowGraph cfg;
+    private DominatorTree dominators;
+    private Liveness liveness;
+    private NaturalLoops loops;
+
+    private int[] defCount;      // variable -> assignments in the current loop
+    private int[] invariantDef;  // variable -> stamp if its only assignment is being moved
+    private boolean[] moved;     // instruction -> moved to some preheader
+    private int[][] preheader;   // loop -> instructions to move, in order
+    private int stamp;
+
+    public List<Quadruple> optimizeLoops(List<Quadruple> code) {
+        return optimizeLoops(IrProgram.fromQuads(code)).toQuads();
+    }
+
+    /**
+     * Optimizes loops in place. Returns {@code code}.
+     */
+    public IrProgram optimizeLoops(IrProgram code) {
+        if (code.size() == 0) return code;
+        ir = code;
+        foldCopies();
+        while (hoist()) {
+            // Moved code may now be invariant in the enclosing loop
+        }
+        ir = null;
+        cfg = null;
+        dominators = null;
+        liveness = null;
+        loops = null;
+        moved = null;
+        preheader = null;
+        return code;
+    }
+
+    /**
+     * {@code t = a op b; x = t} with no other read of {@code t} becomes
+     * {@code x = a op b}.
+     */
+    private void foldCopies() {
+        int[] reads = new int[ir.variableCount()];
+        for (int i = 0; i < ir.size(); i++) {
+            if (Operand.isVariable(ir.a(i))) reads[Operand.payload(ir.a(i))]++;
+            if (Operand.isVariable(ir.b(i))) reads[Operand.payload(ir.b(i))]++;
+        }
+        for (int i = 1; i < ir.size(); i++) {
+            long t = ir.a(i);
+            if (ir.op(i) != IrOp.COPY || !Operand.isVariable(t) || reads[Operand.payload(t)] != 1) continue;
+            int prev = i - 1;
+            if (IrOp.isBinary(ir.op(prev)) && ir.dst(prev) == t) {
+                ir.set(prev, ir.op(prev), ir.dst(i), ir.a(prev), ir.b(prev));
+                ir.nop(i);
+            }
+        }
+        ir.compact();
+    }
+
+    /**
+     * One round of code motion. Returns whether anything moved.
+     */
+    private boolean hoist() {
+        cfg = new ControlFlowGraph(ir);
+        dominators = new DominatorTree(cfg);
+        liveness = new Liveness(cfg);
+        loops = new NaturalLoops(dominators);
+        defCount = new int[ir.variableCount()];
+        invariantDef = new int[ir.variableCount()];
+        moved = new boolean[ir.size()];
+        preheader = new int[loops.loopCount()][];
+
+        boolean any = false;
+        for (int l = 0; l < loops.loopCount(); l++) {
+            if (ir.op(cfg.start(loops.header(l))) != IrOp.LABEL) continue;
+            preheader[l] = findInvariants(l);
+            any |= preheader[l].length > 0;
+        }
+        if (any) rebuild();
+        return any;
+    }
+
+    private int[] findInvariants(int loop) {
+        stamp++;
+        int size = loops.size(loop);
+        countDefinitions(loop, 1);
+
+        // Blocks leaving the loop, and the blocks they leave to
+        int[] exiting = new int[4];
+        int exitingCount = 0;
+        int[] exits = new int[4];
+        int exitCount = 0;
+        for (int k = 0; k < size; k++) {
+            int b = loops.block(loop, k);
+            boolean leaves = false;
+            for (int s = 0; s < cfg.successorCount(b); s++) {
+                int target = cfg.successor(b, s);
+                if (loops.contains(loop, target)) continue;
+                leaves = true;
+                if (exitCount == exits.length) exits = Arrays.copyOf(exits, exitCount * 2);
+                exits[exitCount++] = target;
+            }
+            if (leaves) {
+                if (exitingCount == exiting.length) exiting = Arrays.copyOf(exiting, exitingCount * 2);
+                exiting[exitingCount++] = b;
+            }
+        }
+
+        int header = loops.header(loop);
+        int[] found = new int[4];
+        int count = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int k = 0; k < size; k++) {
+                int b = loops.block(loop, k);
+                for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                    int op = ir.op(i);
+                    if (moved[i] || !(op == IrOp.COPY || IrOp.isBinary(op))) continue;
+                    int dst = Operand.payload(ir.dst(i));
+                    if (defCount[dst] != 1 || liveness.isLiveIn(header, dst)) continue;
+                    if (!isInvariant(ir.a(i)) || !isInvariant(ir.b(i))) continue;
+                    if (!dominatesAll(b, exiting, exitingCount) && isLiveInAny(dst, exits, exitCount)) continue;
+                    moved[i] = true;
+                    invariantDef[dst] = stamp;
+                    if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                    found[count++] = i;
+                    changed = true;
+                }
+            }
+        }
+        countDefinitions(loop, -1);
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Adds {@code delta} to defCount for every assignment in {@code loop};
+     * -1 clears what +1 counted without touching the whole array.
+     */
+    private void countDefinitions(int loop, int delta) {
+        for (int k = 0; k < loops.size(loop); k++) {
+            int b = loops.block(loop, k);
+            for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                if (IrOp.definesDst(ir.op(i))) defCount[Operand.payload(ir.dst(i))] += delta;
+            }
+        }
+    }
+
+    private boolean isInvariant(long operand) {
+        if (!Operand.isVariable(operand)) return true;
+        int v = Operand.payload(operand);
+        return defCount[v] == 0 || invariantDef[v] == stamp;
+    }
+
+    private boolean dominatesAll(int block, int[] blocks, int count) {
+        for (int k = 0; k < count; k++) {
+            if (!dominators.dominates(block, blocks[k])) return false;
+        }
+        return true;
+    }
+
+    private boolean isLiveInAny(int variable, int[] blocks, int count) {
+        for (int k = 0; k < count; k++) {
+            if (liveness.isLiveIn(blocks[k], variable)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Lays the program out again with each loop's moved instructions in
+     * front of its header, retargeting outside jumps to them.
+     */
+    private void rebuild() {
+        int n = cfg.blockCount();
+        int[] loopAt = new int[n];              // header block -> loop with a preheader
+        Arrays.fill(loopAt, NaturalLoops.NO_LOOP);
+        long[] newLabel = new long[loops.loopCount()];
+        for (int l = 0; l < loops.loopCount(); l++) {
+            if (preheader[l] == null || preheader[l].length == 0) continue;
+            int h = loops.header(l);
+            loopAt[h] = l;
+            for (int k = 0; k < cfg.predecessorCount(h); k++) {
+                int p = cfg.predecessor(h, k);
+                if (!loops.contains(l, p) && jumpsTo(p, h)) {
+                    newLabel[l] = ir.newLabel();
+                    break;
+                }
+            }
+        }
+
+        IrProgram out = ir.derive();
+        for (int b = 0; b < n; b++) {
+            int l = loopAt[b];
+            if (l != NaturalLoops.NO_LOOP) {
+                long label = ir.a(cfg.start(b));
+                if (b > 0 && loops.contains(l, b - 1) && ir.op(cfg.end(b - 1) - 1) != IrOp.GOTO) {
+                    // The loop falls into its own header; keep it off the preheader
+                    out.add(IrOp.GOTO, Operand.NONE, label, Operand.NONE);
+                }
+                if (newLabel[l] != 0) out.add(IrOp.LABEL, Operand.NONE, newLabel[l], Operand.NONE);
+                for (int i : preheader[l]) out.add(ir, i);
+            }
+            for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                if (moved[i]) continue;
+                int j = out.add(ir, i);
+                int op = ir.op(i);
+                if (op == IrOp.GOTO || op == IrOp.IFZ || op == IrOp.IFNZ) {
+                    long target = (op == IrOp.GOTO) ? ir.a(i) : ir.b(i);
+                    int t = cfg.blockOfLabel(Operand.payload(target));
+                    int tl = loopAt[t];
+                    if (tl != NaturalLoops.NO_LOOP && newLabel[tl] != 0 && !loops.contains(tl, b)) {
+                        if (op == IrOp.GOTO) out.setA(j, newLabel[tl]); else out.setB(j, newLabel[tl]);
+                    }
+                }
+            }
+        }
+        ir.replaceInstructions(out);
+    }
+
+    private boolean jumpsTo(int from, int to) {
+        int last = cfg.end(from) - 1;
+        int op = ir.op(last);
+        if (op == IrOp.GOTO) return cfg.blockOfLabel(Operand.payload(ir.a(last))) == to;
+        if (op == IrOp.IFZ || op == IrOp.IFNZ) return cfg.blockOfLabel(Operand.payload(ir.b(last))) == to;
+        return false;
+    }
+}
@@ -0,0 +1,153 @@
+package optimizer;
+
+import icg.Quadruple;
+import ir.IrOp;
+import ir.IrProgram;
+import ir.Operand;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rotates top-tested loops into guarded do-while loops.
+ *
+ * A while loop comes out of TacGenerator as
+ * <pre>
+ * LABEL Lh; test; IFZ t Lx; body; GOTO Lh; LABEL Lx
+ * </pre>
+ * which runs both the IFZ and the GOTO on every iteration. Rotation keeps
+ * the test at the top as a guard and repeats it at the bottom with the
+ * jump inverted:
+ * <pre>
+ * LABEL Lh; test; IFZ t Lx; LABEL Lb; body; test'; IFNZ t' Lb; LABEL Lx
+ * </pre>
+ * so each iteration takes one conditional branch. Temps that the test
+ * only uses internally are renamed in the copy, so each still has a
+ * single use for backends that fuse a compare with its jump.
+ *
+ * Only loops whose header is a LABEL, at most {@link #MAX_TEST_LENGTH}
+ * instructions and a conditional exit, with a single back edge that is a
+ * GOTO, are rotated.
+ */
+public class LoopRotator {
+
+    /** Longest loop test, not counting its LABEL and jump, worth copying. */
+    public static final int MAX_TEST_LENGTH = 8;
+
+    private IrProgram ir;
+    private ControlFlowGraph cfg;
+    private Liveness liveness;
+
+    public List<Quadruple> rotateLoops(List<Quadruple> code) {
+        return rotateLoops(IrProgram.fromQuads(code)).toQuads();
+    }
+
+    /**
+     * Rotates loops in place. Returns {@code code}.
+     */
+    public IrProgram rotateLoops(IrProgram code) {
+        if (code.size() == 0) return code;
+        ir = code;
+        cfg = new ControlFlowGraph(code);
+        DominatorTree dominators = new DominatorTree(cfg);
+        NaturalLoops loops = new NaturalLoops(dominators);
+        liveness = new Liveness(cfg);
+
+        int n = cfg.blockCount();
+        long[] bodyLabel = new long[n];   // header block -> label for the body, 0 if not rotated
+        int[] headerOfLatch = new int[n];
+        Arrays.fill(headerOfLatch, -1);
+        boolean any = false;
+        for (int l = 0; l < loops.loopCount(); l++) {
+            int latch = rotatableLatch(loops, l);
+            if (latch < 0) continue;
+            int h = loops.header(l);
+            bodyLabel[h] = code.newLabel();
+            headerOfLatch[latch] = h;
+            any = true;
+        }
+
+        if (any) {
+            IrProgram out = code.derive();
+            for (int b = 0; b < n; b++) {
+                int h = headerOfLatch[b];
+                int end = (h >= 0) ? cfg.end(b) - 1 : cfg.end(b);
+                for (int i = cfg.start(b); i < end; i++) out.add(code, i);
+                if (bodyLabel[b] != 0) {
+                    out.add(IrOp.LABEL, Operand.NONE, bodyLabel[b], Operand.NONE);
+                }
+                if (h >= 0) {
+                    copyTest(h, bodyLabel[h], out);
+                    int exit = cfg.blockOfLabel(Operand.payload(code.b(cfg.end(h) - 1)));
+                    if (exit != b + 1) {
+                        out.add(IrOp.GOTO, Operand.NONE, code.b(cfg.end(h) - 1), Operand.NONE);
+                    }
+                }
+            }
+            code.replaceInstructions(out);
+        }
+        ir = null;
+        cfg = null;
+        liveness = null;
+        return code;
+    }
+
+    /**
+     * The block holding {@code loop}'s only back edge, or -1 if the loop
+     * does not have the shape rotation expects.
+     */
+    private int rotatableLatch(NaturalLoops loops, int loop) {
+        int h = loops.header(loop);
+        int first = cfg.start(h);
+        int last = cfg.end(h) - 1;
+        if (ir.op(first) != IrOp.LABEL || last - first - 1 > MAX_TEST_LENGTH) return -1;
+        int op = ir.op(last);
+        if (op != IrOp.IFZ && op != IrOp.IFNZ) return -1;
+        if (loops.contains(loop, cfg.blockOfLabel(Operand.payload(ir.b(last))))) return -1;
+        if (h + 1 >= cfg.blockCount() || !loops.contains(loop, h + 1)) return -1;
+
+        int latch = -1;
+        for (int k = 0; k < cfg.predecessorCount(h); k++) {
+            int p = cfg.predecessor(h, k);
+            if (!loops.contains(loop, p)) continue;
+            if (latch >= 0 || p == h) return -1;
+            latch = p;
+        }
+        if (latch < 0 || ir.op(cfg.end(latch) - 1) != IrOp.GOTO) return -1;
+        return latch;
+    }
+
+    /**
+     * Appends header {@code h}'s test with its jump inverted to branch back
+     * to {@code bodyLabel}. Temps the test defines for itself get new names.
+     */
+    private void copyTest(int h, long bodyLabel, IrProgram out) {
+        int first = cfg.start(h) + 1;
+        int last = cfg.end(h) - 1;
+        long[] from = new long[last - first];
+        long[] to = new long[last - first];
+        int renamed = 0;
+        for (int i = first; i < last; i++) {
+            long a = rename(ir.a(i), from, to, renamed);
+            long b = rename(ir.b(i), from, to, renamed);
+            long dst = ir.dst(i);
+            if (IrOp.definesDst(ir.op(i)) && Operand.tag(dst) == Operand.TAG_TEMP
+                    && !liveness.isLiveOut(h, Operand.payload(dst))) {
+                from[renamed] = dst;
+                to[renamed++] = ir.newTemp();
+                dst = to[renamed - 1];
+            }
+            out.add(ir.op(i), dst, a, b);
+        }
+        int op = (ir.op(last) == IrOp.IFZ) ? IrOp.IFNZ : IrOp.IFZ;
+        out.add(op, Operand.NONE, rename(ir.a(last), from, to, renamed), bodyLabel);
+    }
+
+    private static long rename(long operand, long[] from, long[] to, int count) {
+        // Latest mapping wins, in case the test assigns a temp twice
+        for (int k = count - 1; k >= 0; k--) {
+            if (from[k] == operand) return to[k];
+        }
+        return operand;
+    }
+}
@@ -0,0 +1,222 @@
+package optimizer;
+
+import icg.Quadruple;
+import ir.IrOp;
+import ir.IrProgram;
+import ir.Operand;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Profile-guided full unrolling of counted loops.
+ *
+ * A loop is unrolled when the profile shows it iterating and its trip
+ * count is known at compile time, which takes:
+ * <ul>
+ * <li>a header that is just {@code LABEL Lh; t = c < K; IFZ t Lx} for a
+ * constant {@code K}, and is the loop's only exit;</li>
+ * <li>{@code c} set to a constant right before the loop, and assigned in
+ * it only by {@code c = c + s} or {@code c = c - s} with constant
+ * {@code s}, in a block that runs exactly once per iteration (in no inner
+ * loop, and dominating the back edge);</li>
+ * <li>a body laid out as one run of blocks ending in the only back edge,
+ * a GOTO to the header.</li>
+ * </ul>
+ * The loop is replaced by that many copies of its body, each with fresh
+ * labels, and a final evaluation of the test, so every variable ends with
+ * the value the loop would have left. The copies still update {@code c},
+ * and it takes constant propagation afterwards to turn it into constants
+ * and remove the updates. Loops running more than {@link #MAX_TRIP_COUNT}
+ * times, or growing past {@link #MAX_UNROLLED_SIZE} instructions, are left
+ * alone. Unrolling an inner loop can make its outer loop qualify, so this
+ * repeats until nothing changes.
+ */
+public class LoopUnroller {
+
+    public static final int MAX_TRIP_COUNT = 16;
+    public static final int MAX_UNROLLED_SIZE = 256;
+
+    private IrProgram ir;
+    private ControlFlowGraph cfg;
+    private DominatorTree dominators;
+    private NaturalLoops loops;
+    private int unrolled;
+
+    public List<Quadruple> unroll(List<Quadruple> code, Profile profile) {
+        return unroll(IrProgram.fromQuads(code), profile).toQuads();
+    }
+
+    /**
+     * Unrolls loops in place. Returns {@code code}.
+     */
+    public IrProgram unroll(IrProgram code, Profile profile) {
+        unrolled = 0;
+        if (code.size() == 0 || profile.isEmpty()) return code;
+        ir = code;
+        while (unrollRound(profile)) {
+            // An outer loop may now qualify
+        }
+        ir = null;
+        cfg = null;
+        dominators = null;
+        loops = null;
+        return code;
+    }
+
+    /**
+     * Loops unrolled by the last {@link #unroll} call.
+     */
+    public int getUnrolledCount() {
+        return unrolled;
+    }
+
+    private boolean unrollRound(Profile profile) {
+        cfg = new ControlFlowGraph(ir);
+        dominators = new DominatorTree(cfg);
+        loops = new NaturalLoops(dominators);
+        int n = cfg.blockCount();
+        int[] tripCount = new int[n];   // header block -> copies of the body, -1 if not unrolled
+        Arrays.fill(tripCount, -1);
+        boolean[] taken = new boolean[n];
+        boolean any = false;
+        for (int l = 0; l < loops.loopCount(); l++) {
+            int h = loops.header(l);
+            if (ir.op(cfg.start(h)) != IrOp.LABEL) continue;
+            if (profile.loopIterations(ir.text(ir.a(cfg.start(h)))) == 0) continue;
+            boolean free = true;
+            for (int k = 0; k < loops.size(l) && free; k++) free = !taken[loops.block(l, k)];
+            if (!free) continue; // contains a loop unrolled this round
+            int trips = tripCount(l);
+            if (trips < 0) continue;
+            tripCount[h] = trips;
+            for (int k = 0; k < loops.size(l); k++) taken[loops.block(l, k)] = true;
+            any = true;
+            unrolled++;
+        }
+        if (any) rebuild(tripCount);
+        return any;
+    }
+
+    /**
+     * Iterations of {@code loop} if it can be unrolled, or -1.
+     */
+    private int tripCount(int loop) {
+        int h = loops.header(loop);
+        int first = cfg.start(h);
+        if (cfg.end(h) - first != 3 || ir.op(first + 1) != IrOp.LT || ir.op(first + 2) != IrOp.IFZ) return -1;
+        long t = ir.dst(first + 1);
+        long counter = ir.a(first + 1);
+        long limit = ir.b(first + 1);
+        if (!Operand.isVariable(counter) || !Operand.isConstant(limit) || ir.a(first + 2) != t) return -1;
+
+        // Contiguous, single exit from the header, single GOTO back edge at the bottom
+        int size = loops.size(loop);
+        int latch = h + size - 1;
+        if (latch >= cfg.blockCount() || latch == h) return -1;
+        for (int b = h; b <= latch; b++) {
+            if (!loops.contains(loop, b)) return -1;
+            for (int s = 0; s < cfg.successorCount(b); s++) {
+                int target = cfg.successor(b, s);
+                if (!loops.contains(loop, target) && b != h) return -1;
+                if (target == h && b != latch) return -1;
+            }
+        }
+        int last = cfg.end(latch) - 1;
+        if (ir.op(last) != IrOp.GOTO || cfg.blockOfLabel(Operand.payload(ir.a(last))) != h) return -1;
+
+        // The counter's only update, once per iteration
+        int c = Operand.payload(counter);
+        int step = 0;
+        int updates = 0;
+        for (int b = h; b <= latch; b++) {
+            for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                if (!IrOp.definesDst(ir.op(i)) || Operand.payload(ir.dst(i)) != c) continue;
+                updates++;
+                if (loops.loopOf(b) != loop || !dominators.dominates(b, latch)) return -1;
+                int op = ir.op(i);
+                if (op == IrOp.ADD && ir.a(i) == counter && Operand.isConstant(ir.b(i))) {
+                    step = Operand.payload(ir.b(i));
+                } else if (op == IrOp.ADD && ir.b(i) == counter && Operand.isConstant(ir.a(i))) {
+                    step = Operand.payload(ir.a(i));
+                } else if (op == IrOp.SUB && ir.a(i) == counter && Operand.isConstant(ir.b(i))) {
+                    step = -Operand.payload(ir.b(i));
+                } else {
+                    return -1;
+                }
+            }
+        }
+        if (updates != 1) return -1;
+
+        // Its value on entry: set to a constant in the block falling into the header
+        int outside = -1;
+        for (int k = 0; k < cfg.predecessorCount(h); k++) {
+            int p = cfg.predecessor(h, k);
+            if (loops.contains(loop, p)) continue;
+            if (outside >= 0) return -1;
+            outside = p;
+        }
+        if (outside < 0 || outside != h - 1) return -1;
+        long init = Operand.NONE;
+        for (int i = cfg.end(outside) - 1; i >= cfg.start(outside) && init == Operand.NONE; i--) {
+            if (!IrOp.definesDst(ir.op(i)) || Operand.payload(ir.dst(i)) != c) continue;
+            if (ir.op(i) != IrOp.COPY || !Operand.isConstant(ir.a(i))) return -1;
+            init = ir.a(i);
+        }
+        if (init == Operand.NONE) return -1;
+
+        int value = Operand.payload(init);
+        int bound = Operand.payload(limit);
+        int trips = 0;
+        while (value < bound) {
+            if (++trips > MAX_TRIP_COUNT) return -1;
+            value += step;
+        }
+        int body = last - cfg.end(h);
+        if ((long) trips * body > MAX_UNROLLED_SIZE) return -1;
+        return trips;
+    }
+
+    private void rebuild(int[] tripCount) {
+        IrProgram out = ir.derive();
+        long[] renamed = new long[ir.labelCount()];
+        for (int b = 0; b < cfg.blockCount(); b++) {
+            if (tripCount[b] < 0) {
+                for (int i = cfg.start(b); i < cfg.end(b); i++) out.add(ir, i);
+                continue;
+            }
+            int h = b;
+            int loop = loops.loopOf(h);
+            int latch = h + loops.size(loop) - 1;
+            int first = cfg.start(h);
+            int from = cfg.end(h);
+            int to = cfg.end(latch) - 1; // leaves out the back edge
+            out.add(ir, first);
+            for (int copy = 0; copy < tripCount[h]; copy++) {
+                for (int i = from; i < to; i++) {
+                    if (ir.op(i) == IrOp.LABEL) renamed[Operand.payload(ir.a(i))] = ir.newLabel();
+                }
+                for (int i = from; i < to; i++) {
+                    int op = ir.op(i);
+                    long a = ir.a(i);
+                    long bb = ir.b(i);
+                    if (op == IrOp.LABEL || op == IrOp.GOTO) a = rename(a, renamed);
+                    if (op == IrOp.IFZ || op == IrOp.IFNZ) bb = rename(bb, renamed);
+                    out.add(op, ir.dst(i), a, bb);
+                }
+            }
+            out.add(ir, first + 1); // t = c < K, false now
+            long exit = ir.b(first + 2);
+            if (cfg.blockOfLabel(Operand.payload(exit)) != latch + 1) {
+                out.add(IrOp.GOTO, Operand.NONE, exit, Operand.NONE);
+            }
+            b = latch;
+        }
+        ir.replaceInstructions(out);
+    }
+
+    private static long rename(long label, long[] renamed) {
+        int id = Operand.payload(label);
+        return (id < renamed.length && renamed[id] != 0) ? renamed[id] : label;
+    }
+}
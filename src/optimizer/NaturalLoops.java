@@ -0,0 +1,182 @@
+package optimizer;
+
+import java.util.Arrays;
+
+/**
+ * The natural loops of a {@link ControlFlowGraph}.
+ *
+ * An edge whose target dominates its source is a back edge, and its target
+ * is a loop header. A loop is its header plus every block that reaches one
+ * of the header's back edges without passing through the header; back
+ * edges sharing a header make up one loop. Loops are numbered innermost
+ * first, so an enclosing loop always has a higher number than the loops
+ * inside it.
+ */
+public final class NaturalLoops {
+
+    public static final int NO_LOOP = -1;
+
+    private final ControlFlowGraph cfg;
+    private final int[] header;
+    private final int[] parent;      // loop -> immediately enclosing loop, or NO_LOOP
+    private final int[] depth;       // loop -> nesting depth, outermost is 1
+    private final int[] preorder;    // loop -> position in a preorder walk of the nesting tree
+    private final int[] nested;      // loop -> itself plus the loops inside it
+    private final int[] blockStart;  // loop -> its blocks at [blockStart[l], blockStart[l + 1])
+    private final int[] blocks;
+    private final int[] innermost;   // block -> innermost loop containing it, or NO_LOOP
+
+    public NaturalLoops(DominatorTree dominators) {
+        this.cfg = dominators.cfg();
+        int n = cfg.blockCount();
+
+        // Headers, deepest in the dominator tree first: an inner header is
+        // dominated by the outer one, so inner loops come out first
+        boolean[] isHeader = new boolean[n];
+        int headerCount = 0;
+        for (int b = 0; b < n; b++) {
+            if (!dominators.isReachable(b)) continue;
+            for (int k = 0; k < cfg.successorCount(b); k++) {
+                int s = cfg.successor(b, k);
+                if (!isHeader[s] && dominators.dominates(s, b)) {
+                    isHeader[s] = true;
+                    headerCount++;
+                }
+            }
+        }
+        Integer[] order = new Integer[headerCount];
+        for (int b = 0, h = 0; b < n; b++) {
+            if (isHeader[b]) order[h++] = b;
+        }
+        Arrays.sort(order, (x, y) -> dominators.depth(y) - dominators.depth(x));
+
+        header = new int[headerCount];
+        parent = new int[headerCount];
+        depth = new int[headerCount];
+        blockStart = new int[headerCount + 1];
+        innermost = new int[n];
+        Arrays.fill(parent, NO_LOOP);
+        Arrays.fill(innermost, NO_LOOP);
+        int[] loopOfHeader = new int[n];
+        Arrays.fill(loopOfHeader, NO_LOOP);
+
+        int[] body = new int[16];
+        int size = 0;
+        int[] stamp = new int[n];    // loop + 1 once a block is in the body
+        int[] work = new int[n];
+        for (int l = 0; l < headerCount; l++) {
+            int h = order[l];
+            header[l] = h;
+            loopOfHeader[h] = l;
+            int start = size;
+            int top = 0;
+            stamp[h] = l + 1;
+            work[top++] = h;
+            boolean atHeader = true;
+            while (top > 0) {
+                int x = work[--top];
+                if (size == body.length) body = Arrays.copyOf(body, size * 2);
+                body[size++] = x;
+                if (innermost[x] == NO_LOOP) {
+                    innermost[x] = l;
+                } else if (x != h) {
+                    int inner = loopOfHeader[x];
+                    if (inner != NO_LOOP && parent[inner] == NO_LOOP) parent[inner] = l;
+                }
+                for (int k = 0; k < cfg.predecessorCount(x); k++) {
+                    int p = cfg.predecessor(x, k);
+                    if (stamp[p] == l + 1 || !dominators.isReachable(p)) continue;
+                    // From the header only follow back edges into the loop
+                    if (atHeader && !dominators.dominates(h, p)) continue;
+                    stamp[p] = l + 1;
+                    work[top++] = p;
+                }
+                atHeader = false;
+            }
+            Arrays.sort(body, start, size);
+            blockStart[l + 1] = size;
+        }
+        blocks = Arrays.copyOf(body, size);
+
+        // Number the nesting tree in preorder, so a loop and the loops
+        // inside it take up [preorder[l], preorder[l] + nested[l]).
+        // Parents are numbered after their children, so one pass up sizes
+        // the subtrees and one pass down places them.
+        preorder = new int[headerCount];
+        nested = new int[headerCount];
+        for (int l = 0; l < headerCount; l++) {
+            nested[l]++;
+            if (parent[l] != NO_LOOP) nested[parent[l]] += nested[l];
+        }
+        int[] next = new int[headerCount]; // loop -> first number free for its next child
+        int roots = 0;
+        for (int l = headerCount - 1; l >= 0; l--) {
+            if (parent[l] == NO_LOOP) {
+                depth[l] = 1;
+                preorder[l] = roots;
+                roots += nested[l];
+            } else {
+                depth[l] = depth[parent[l]] + 1;
+                preorder[l] = next[parent[l]];
+                next[parent[l]] += nested[l];
+            }
+            next[l] = preorder[l] + 1;
+        }
+    }
+
+    public ControlFlowGraph cfg() {
+        return cfg;
+    }
+
+    public int loopCount() {
+        return header.length;
+    }
+
+    public int header(int loop) {
+        return header[loop];
+    }
+
+    /**
+     * The loop immediately enclosing {@code loop}, or {@link #NO_LOOP}.
+     */
+    public int parent(int loop) {
+        return parent[loop];
+    }
+
+    /**
+     * Nesting depth of {@code loop}; an outermost loop has depth 1.
+     */
+    public int depth(int loop) {
+        return depth[loop];
+    }
+
+    /**
+     * Number of blocks in {@code loop}, including those of inner loops.
+     */
+    public int size(int loop) {
+        return blockStart[loop + 1] - blockStart[loop];
+    }
+
+    /**
+     * The {@code k}th block of {@code loop}, in ascending block order.
+     */
+    public int block(int loop, int k) {
+        return blocks[blockStart[loop] + k];
+    }
+
+    /**
+     * The innermost loop containing {@code block}, or {@link #NO_LOOP}.
+     */
+    public int loopOf(int block) {
+        return innermost[block];
+    }
+
+    /**
+     * True if {@code block} is in {@code loop}, directly or through an
+     * inner loop. Constant time.
+     */
+    public boolean contains(int loop, int block) {
+        int l = innermost[block];
+        return l != NO_LOOP && preorder[l] >= preorder[loop] && preorder[l] < preorder[loop] + nested[loop];
+    }
+}
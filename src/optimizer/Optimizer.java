@@ -1,19 +1,82 @@
 package optimizer;
 
 import icg.Quadruple;
+import ir.IrProgram;
+
 import java.util.List;
 
 public class Optimizer {
 
+    /**
+     * Names the passes {@link #optimize} runs, in order. Anything that
+     * caches optimizer output keys on this, so change it whenever the
+     * passes or their behavior change. Layout and unrolling only act on a
+     * profile, so output cached without one does not depend on them.
+     */
+    public String configuration() {
+        return "layout,fold,sccp,cse,licm,unroll,dce,rotate,branch,slots";
+    }
+
     public List<Quadruple> optimize(List<Quadruple> code) {
-        // Step 1: Constant Folding
-        ConstantFolder folder = new ConstantFolder();
-        List<Quadruple> folded = folder.foldConstants(code);
+        return optimize(IrProgram.fromQuads(code)).toQuads();
+    }
+
+    public List<Quadruple> optimize(List<Quadruple> code, Profile profile) {
+        return optimize(IrProgram.fromQuads(code), profile).toQuads();
+    }
+
+    /**
+     * Optimizes {@code code} in place and returns it.
+     */
+    public IrProgram optimize(IrProgram code) {
+        return optimize(code, Profile.EMPTY);
+    }
+
+    /**
+     * Optimizes {@code code} in place using execution counts from a
+     * {@link Profiler} run of the same code, and returns it. Only block
+     * layout and loop unrolling look at the profile; with an empty one
+     * the result is the same as {@link #optimize(IrProgram)}.
+     */
+    public IrProgram optimize(IrProgram code, Profile profile) {
+        // Step 1: Block Layout (profile-guided)
+        new BlockLayout().layOut(code, profile);
+
+        // Step 2: Constant Folding
+        new ConstantFolder().foldConstants(code);
+
+        // Step 3: Sparse Conditional Constant Propagation
+        new ConstantPropagator().propagate(code);
+
+        // Step 4: Common Subexpression Elimination
+        new CommonSubexpressionEliminator().eliminate(code);
+
+        // Step 5: Loop-Invariant Code Motion
+        new LoopOptimizer().optimizeLoops(code);
+
+        // Step 6: Loop Unrolling (profile-guided), then propagate the
+        // now-constant loop counters through the copies
+        LoopUnroller unroller = new LoopUnroller();
+        unroller.unroll(code, profile);
+        if (unroller.getUnrolledCount() > 0) {
+            new ConstantFolder().foldConstants(code);
+            new ConstantPropagator().propagate(code);
+            new CommonSubexpressionEliminator().eliminate(code);
+        }
+
+        // Step 7: Dead Code Elimination
+        new DeadCodeEliminator().eliminateDeadCode(code);
+
+        // Step 8: Loop Rotation
+        new LoopRotator().rotateLoops(code);
+
+        // Step 9: Branch Optimization
+        new BranchOptimizer().optimizeBranches(code);
 
-        // Step 2: Dead Code Elimination
-        DeadCodeEliminator eliminator = new DeadCodeEliminator();
+        // Step 10: Slot Allocation
+        new SlotAllocator().allocate(code);
 
         // Return final optimized code
-        return eliminator.eliminateDeadCode(folded);
+        return code;
     }
 }
@@ -0,0 +1,142 @@
+package optimizer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Execution counts from a {@link Profiler} run, keyed by the label names of
+ * the unoptimized TAC, so a profile applies to the same source compiled by
+ * the same compiler version.
+ *
+ * Text format, one record per line after the header:
+ * <pre>
+ * tinylang-profile 1
+ * label L0 120          (times the LABEL was executed)
+ * branch L1 20 100      (IFZ/IFNZ jumping to L1: times taken, not taken)
+ * loop L0 20 100        (loop headed by L0: times entered, back edges taken)
+ * </pre>
+ * Names the program does not have are ignored, so a stale profile only
+ * costs the optimizations it would have enabled.
+ */
+public final class Profile {
+
+    public static final String HEADER = "tinylang-profile 1";
+
+    /** A profile with no counts, under which no profile-guided pass changes anything. */
+    public static final Profile EMPTY = new Profile();
+
+    private final Map<String, Long> labels = new TreeMap<>();
+    private final Map<String, long[]> branches = new TreeMap<>();
+    private final Map<String, long[]> loops = new TreeMap<>();
+
+    public boolean isEmpty() {
+        return labels.isEmpty() && branches.isEmpty() && loops.isEmpty();
+    }
+
+    public long labelCount(String label) {
+        return labels.getOrDefault(label, 0L);
+    }
+
+    /**
+     * Times a conditional jump to {@code target} was taken.
+     */
+    public long branchTaken(String target) {
+        long[] counts = branches.get(target);
+        return (counts != null) ? counts[0] : 0;
+    }
+
+    /**
+     * Times a conditional jump to {@code target} fell through.
+     */
+    public long branchNotTaken(String target) {
+        long[] counts = branches.get(target);
+        return (counts != null) ? counts[1] : 0;
+    }
+
+    /**
+     * Times the loop headed by {@code header} was entered from outside.
+     */
+    public long loopEntries(String header) {
+        long[] counts = loops.get(header);
+        return (counts != null) ? counts[0] : 0;
+    }
+
+    /**
+     * Times the loop headed by {@code header} jumped back to it, summed over all entries.
+     */
+    public long loopIterations(String header) {
+        long[] counts = loops.get(header);
+        return (counts != null) ? counts[1] : 0;
+    }
+
+    void addLabel(String label, long count) {
+        labels.merge(label, count, Long::sum);
+    }
+
+    void addBranch(String target, long taken, long notTaken) {
+        long[] counts = branches.computeIfAbsent(target, k -> new long[2]);
+        counts[0] += taken;
+        counts[1] += notTaken;
+    }
+
+    void addLoop(String header, long entries, long iterations) {
+        long[] counts = loops.computeIfAbsent(header, k -> new long[2]);
+        counts[0] += entries;
+        counts[1] += iterations;
+    }
+
+    public void write(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            for (Map.Entry<String, Long> e : labels.entrySet()) {
+                out.write("label " + e.getKey() + " " + e.getValue());
+                out.newLine();
+            }
+            for (Map.Entry<String, long[]> e : branches.entrySet()) {
+                out.write("branch " + e.getKey() + " " + e.getValue()[0] + " " + e.getValue()[1]);
+                out.newLine();
+            }
+            for (Map.Entry<String, long[]> e : loops.entrySet()) {
+                out.write("loop " + e.getKey() + " " + e.getValue()[0] + " " + e.getValue()[1]);
+                out.newLine();
+            }
+        }
+    }
+
+    public static Profile read(Path file) throws IOException {
+        Profile profile = new Profile();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = in.readLine();
+            if (line == null || !line.equals(HEADER)) {
+                throw new IllegalArgumentException("Not a TinyLang profile: " + file);
+            }
+            int number = 1;
+            while ((line = in.readLine()) != null) {
+                number++;
+                if (line.isBlank()) continue;
+                String[] parts = line.trim().split("\\s+");
+                try {
+                    if (parts[0].equals("label") && parts.length == 3) {
+                        profile.addLabel(parts[1], Long.parseLong(parts[2]));
+                    } else if (parts[0].equals("branch") && parts.length == 4) {
+                        profile.addBranch(parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+                    } else if (parts[0].equals("loop") && parts.length == 4) {
+                        profile.addLoop(parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+                    } else {
+                        throw new IllegalArgumentException("Bad profile line " + number + ": " + line);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Bad count on profile line " + number + ": " + line);
+                }
+            }
+        }
+        return profile;
+    }
+}
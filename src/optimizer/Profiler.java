@@ -0,0 +1,138 @@
+package optimizer;
+
+import icg.Quadruple;
+import ir.IrOp;
+import ir.IrProgram;
+import ir.Operand;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * The profiling run mode: executes unoptimized TAC directly, counting how
+ * often each instruction runs and each conditional jump is taken, and
+ * returns the counts as a {@link Profile} for
+ * {@link Optimizer#optimize(IrProgram, Profile)}.
+ *
+ * Run it on TacGenerator's output for the program, as the optimizer will
+ * see it: profiles are keyed by label name. Loop counts come from the
+ * {@link NaturalLoops} of the same code: the back edges into a header are
+ * its iterations, and the rest of its executions are entries.
+ */
+public class Profiler {
+
+    public Profile profile(List<Quadruple> code, IntSupplier input, IntConsumer output) {
+        return profile(IrProgram.fromQuads(code), input, output);
+    }
+
+    /**
+     * Runs {@code code} with zero-initialised variables. Does not change it.
+     */
+    public Profile profile(IrProgram code, IntSupplier input, IntConsumer output) {
+        int n = code.size();
+        int[] labelAt = new int[code.labelCount()];
+        for (int i = 0; i < n; i++) {
+            if (code.op(i) == IrOp.LABEL) labelAt[Operand.payload(code.a(i))] = i;
+        }
+        long[] executed = new long[n];
+        long[] taken = new long[n];
+        int[] vars = new int[code.variableCount()];
+
+        int pc = 0;
+        while (pc < n) {
+            executed[pc]++;
+            int op = code.op(pc);
+            switch (op) {
+                case IrOp.COPY:
+                    vars[Operand.payload(code.dst(pc))] = value(code.a(pc), vars);
+                    pc++;
+                    break;
+                case IrOp.ADD:
+                    vars[Operand.payload(code.dst(pc))] = value(code.a(pc), vars) + value(code.b(pc), vars);
+                    pc++;
+                    break;
+                case IrOp.SUB:
+                    vars[Operand.payload(code.dst(pc))] = value(code.a(pc), vars) - value(code.b(pc), vars);
+                    pc++;
+                    break;
+                case IrOp.LT:
+                    vars[Operand.payload(code.dst(pc))] = (value(code.a(pc), vars) < value(code.b(pc), vars)) ? 1 : 0;
+                    pc++;
+                    break;
+                case IrOp.IFZ:
+                case IrOp.IFNZ:
+                    if ((value(code.a(pc), vars) == 0) == (op == IrOp.IFZ)) {
+                        taken[pc]++;
+                        pc = labelAt[Operand.payload(code.b(pc))];
+                    } else {
+                        pc++;
+                    }
+                    break;
+                case IrOp.GOTO:
+                    taken[pc]++;
+                    pc = labelAt[Operand.payload(code.a(pc))];
+                    break;
+                case IrOp.PRINT:
+                    output.accept(value(code.a(pc), vars));
+                    pc++;
+                    break;
+                case IrOp.READ:
+                    vars[Operand.payload(code.dst(pc))] = input.getAsInt();
+                    pc++;
+                    break;
+                default: // LABEL, NOP
+                    pc++;
+                    break;
+            }
+        }
+        return collect(code, executed, taken);
+    }
+
+    private static Profile collect(IrProgram code, long[] executed, long[] taken) {
+        Profile profile = new Profile();
+        for (int i = 0; i < code.size(); i++) {
+            int op = code.op(i);
+            if (op == IrOp.LABEL) {
+                profile.addLabel(code.text(code.a(i)), executed[i]);
+            } else if (op == IrOp.IFZ || op == IrOp.IFNZ) {
+                profile.addBranch(code.text(code.b(i)), taken[i], executed[i] - taken[i]);
+            }
+        }
+        if (code.size() == 0) return profile;
+
+        NaturalLoops loops = new NaturalLoops(new DominatorTree(new ControlFlowGraph(code)));
+        ControlFlowGraph cfg = loops.cfg();
+        for (int l = 0; l < loops.loopCount(); l++) {
+            int h = loops.header(l);
+            int first = cfg.start(h);
+            if (code.op(first) != IrOp.LABEL) continue;
+            long backEdges = 0;
+            for (int k = 0; k < cfg.predecessorCount(h); k++) {
+                int p = cfg.predecessor(h, k);
+                if (loops.contains(l, p)) backEdges += edgeCount(code, cfg, p, h, executed, taken);
+            }
+            profile.addLoop(code.text(code.a(first)), executed[first] - backEdges, backEdges);
+        }
+        return profile;
+    }
+
+    /**
+     * Times control went from block {@code from} to its successor {@code to}.
+     */
+    private static long edgeCount(IrProgram code, ControlFlowGraph cfg, int from, int to,
+                                  long[] executed, long[] taken) {
+        int last = cfg.end(from) - 1;
+        int op = code.op(last);
+        if (op == IrOp.GOTO) return taken[last];
+        if (op != IrOp.IFZ && op != IrOp.IFNZ) return executed[last];
+        boolean jumps = cfg.blockOfLabel(Operand.payload(code.b(last))) == to;
+        boolean fallsThrough = from + 1 == to;
+        if (jumps && fallsThrough) return executed[last];
+        return jumps ? taken[last] : executed[last] - taken[last];
+    }
+
+    private static int value(long operand, int[] vars) {
+        return Operand.isConstant(operand) ? Operand.payload(operand) : vars[Operand.payload(operand)];
+    }
+}
@@ -0,0 +1,149 @@
+package optimizer;
+
+import ir.IrOp;
+import ir.IrProgram;
+import ir.Operand;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Which assignments may have produced the value a variable holds at each
+ * point of the program.
+ *
+ * Every instruction that writes a variable is a definition. Each variable
+ * also has one definition standing for its initial value (TinyLang frames
+ * start zeroed), which reaches every point some path from the entry gets
+ * to without assigning the variable. As in {@link Liveness}, only variables
+ * read across block boundaries take part; the rest are resolved by looking
+ * inside the block.
+ */
+public final class ReachingDefinitions {
+
+    /**
+     * What {@link #instruction} returns for a variable's initial-value definition.
+     */
+    public static final int ENTRY = -1;
+
+    private final ControlFlowGraph cfg;
+    private final int[] globalIndex;  // variable ID -> index, or -1
+    private final int[] defInstruction; // definition -> instruction, or ENTRY
+    private final int[] defVariable;    // definition -> variable ID
+    private final BitSet[] defsOf;      // global index -> its definitions
+    private final DataflowSolver.Result result;
+
+    public ReachingDefinitions(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+        IrProgram ir = cfg.program();
+        int n = cfg.blockCount();
+
+        globalIndex = new int[ir.variableCount()];
+        Arrays.fill(globalIndex, -1);
+        int[] globals = Liveness.globalNames(cfg, globalIndex);
+
+        // Definitions 0..globals-1 are the initial values, then instructions in order
+        int count = globals.length;
+        for (int i = 0; i < ir.size(); i++) {
+            if (IrOp.definesDst(ir.op(i)) && globalIndex[Operand.payload(ir.dst(i))] >= 0) count++;
+        }
+        defInstruction = new int[count];
+        defVariable = new int[count];
+        defsOf = new BitSet[globals.length];
+        BitSet entry = new BitSet(count);
+        for (int g = 0; g < globals.length; g++) {
+            defInstruction[g] = ENTRY;
+            defVariable[g] = globals[g];
+            defsOf[g] = new BitSet(count);
+            defsOf[g].set(g);
+            entry.set(g);
+        }
+        int d = globals.length;
+        for (int i = 0; i < ir.size(); i++) {
+            if (IrOp.definesDst(ir.op(i))) {
+                int v = Operand.payload(ir.dst(i));
+                if (globalIndex[v] >= 0) {
+                    defInstruction[d] = i;
+                    defVariable[d] = v;
+                    defsOf[globalIndex[v]].set(d);
+                    d++;
+                }
+            }
+        }
+
+        // gen = the last definition of each variable in the block,
+        // kill = every definition of the variables the block assigns
+        BitSet[] gen = new BitSet[n];
+        BitSet[] kill = new BitSet[n];
+        int def = globals.length;
+        for (int b = 0; b < n; b++) {
+            gen[b] = new BitSet();
+            kill[b] = new BitSet();
+            for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                if (IrOp.definesDst(ir.op(i))) {
+                    int g = globalIndex[Operand.payload(ir.dst(i))];
+                    if (g >= 0) {
+                        gen[b].andNot(defsOf[g]);
+                        gen[b].set(def++);
+                        kill[b].or(defsOf[g]);
+                    }
+                }
+            }
+        }
+        result = DataflowSolver.solve(cfg, DataflowSolver.Direction.FORWARD, DataflowSolver.Meet.UNION,
+                count, gen, kill, entry);
+    }
+
+    public ControlFlowGraph cfg() {
+        return cfg;
+    }
+
+    public int definitionCount() {
+        return defInstruction.length;
+    }
+
+    /**
+     * The instruction a definition is, or {@link #ENTRY} for an initial value.
+     */
+    public int instruction(int definition) {
+        return defInstruction[definition];
+    }
+
+    public int variable(int definition) {
+        return defVariable[definition];
+    }
+
+    /**
+     * The definitions reaching the start of {@code block}. Do not modify.
+     */
+    public BitSet reachingIn(int block) {
+        return result.in(block);
+    }
+
+    /**
+     * The instructions whose value of {@code variable} may be the one read
+     * just before {@code instruction}; {@link #ENTRY} stands for the initial
+     * value.
+     */
+    public int[] definitionsReaching(int instruction, int variable) {
+        IrProgram ir = cfg.program();
+        int block = cfg.blockOf(instruction);
+        for (int i = instruction - 1; i >= cfg.start(block); i--) {
+            if (IrOp.definesDst(ir.op(i)) && Operand.payload(ir.dst(i)) == variable) {
+                return new int[]{i};
+            }
+        }
+        int g = globalIndex[variable];
+        if (g < 0) {
+            // Never read across blocks, so only its initial value can be here
+            return new int[]{ENTRY};
+        }
+        BitSet reaching = (BitSet) result.in(block).clone();
+        reaching.and(defsOf[g]);
+        int[] defs = new int[reaching.cardinality()];
+        int k = 0;
+        for (int d = reaching.nextSetBit(0); d >= 0; d = reaching.nextSetBit(d + 1)) {
+            defs[k++] = defInstruction[d];
+        }
+        return defs;
+    }
+}
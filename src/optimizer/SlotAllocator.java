@@ -0,0 +1,200 @@
+package optimizer;
+
+import icg.Quadruple;
+import ir.IrOp;
+import ir.IrProgram;
+import ir.Operand;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Packs temps and block-local variables into as few frame slots as
+ * possible, by linear scan over live intervals (Poletto and Sarkar).
+ *
+ * A name's interval runs, in instruction order, from the first to the last
+ * point where it is written, read, or live across a block boundary, so
+ * names whose intervals do not overlap are never live at the same time and
+ * can share storage. Intervals are taken in order of their start and each
+ * reuses a slot whose interval has already ended, so the number of slots
+ * is the largest number of intervals alive at any one point. An interval
+ * may start at the instruction that ends another when that instruction
+ * reads the old name and writes the new one, as in {@code $t1 = $t0 + 1}.
+ *
+ * A slot is named after a temp in it, or its first name if it holds no
+ * temps, so later passes still see temps as temps; every other name in it
+ * is renamed to match. Names live on entry to the program, which rely
+ * on starting at zero, always start a slot of their own. Only temps and
+ * the {@code name$slot} variables of shadowing declarations are packed;
+ * names as declared are left alone.
+ */
+public class SlotAllocator {
+
+    private int slotCount;
+
+    public List<Quadruple> allocate(List<Quadruple> code) {
+        return allocate(IrProgram.fromQuads(code)).toQuads();
+    }
+
+    /**
+     * Renames packed names in place. Returns {@code code}.
+     */
+    public IrProgram allocate(IrProgram code) {
+        int v = code.variableCount();
+        boolean[] packed = new boolean[v];
+        for (int id = 0; id < v; id++) {
+            packed[id] = code.isTemp(id) || code.variableName(id).indexOf('$') >= 0;
+        }
+        int[] start = new int[v];
+        int[] end = new int[v];
+        Arrays.fill(start, Integer.MAX_VALUE);
+        Arrays.fill(end, -1);
+        if (code.size() == 0) return code;
+
+        for (int i = 0; i < code.size(); i++) {
+            extend(code.a(i), i, packed, start, end);
+            extend(code.b(i), i, packed, start, end);
+            if (IrOp.definesDst(code.op(i))) extend(code.dst(i), i, packed, start, end);
+        }
+        ControlFlowGraph cfg = new ControlFlowGraph(code);
+        Liveness liveness = new Liveness(cfg);
+        BitSet live = new BitSet();
+        for (int b = 0; b < cfg.blockCount(); b++) {
+            liveness.addLiveIn(b, live);
+            for (int x = live.nextSetBit(0); x >= 0; x = live.nextSetBit(x + 1)) {
+                live.clear(x);
+                if (packed[x]) extend(x, cfg.start(b), start, end);
+            }
+            liveness.addLiveOut(b, live);
+            for (int x = live.nextSetBit(0); x >= 0; x = live.nextSetBit(x + 1)) {
+                live.clear(x);
+                if (packed[x]) extend(x, cfg.end(b) - 1, start, end);
+            }
+        }
+
+        // Names by interval start (a counting sort)
+        int n = code.size();
+        int[] bucket = new int[n + 1];
+        int count = 0;
+        for (int x = 0; x < v; x++) {
+            if (end[x] >= 0) {
+                bucket[start[x] + 1]++;
+                count++;
+            }
+        }
+        for (int p = 0; p < n; p++) bucket[p + 1] += bucket[p];
+        int[] order = new int[count];
+        for (int x = 0; x < v; x++) {
+            if (end[x] >= 0) order[bucket[start[x]]++] = x;
+        }
+
+        // Active intervals in a min-heap on their end, free slots on a stack
+        int[] heap = new int[count];
+        int heapSize = 0;
+        int[] free = new int[count];
+        int freeCount = 0;
+        int[] slotOf = new int[v];
+        int[] slotName = new int[count];
+        slotCount = 0;
+        for (int x : order) {
+            boolean writesFirst = startsWithWrite(code, x, start[x]);
+            while (heapSize > 0) {
+                int top = heap[0];
+                boolean ended = end[top] < start[x] || (end[top] == start[x] && writesFirst);
+                if (!ended) break;
+                free[freeCount++] = slotOf[top];
+                heap[0] = heap[--heapSize];
+                siftDown(heap, heapSize, end);
+            }
+            int slot;
+            if (freeCount > 0) {
+                slot = free[--freeCount];
+            } else {
+                slot = slotCount++;
+                slotName[slot] = x;
+            }
+            if (code.isTemp(x) && !code.isTemp(slotName[slot])) {
+                slotName[slot] = x;
+            }
+            slotOf[x] = slot;
+            heap[heapSize++] = x;
+            siftUp(heap, heapSize - 1, end);
+        }
+
+        for (int i = 0; i < code.size(); i++) {
+            code.set(i, code.op(i),
+                    rename(code, code.dst(i), packed, end, slotOf, slotName),
+                    rename(code, code.a(i), packed, end, slotOf, slotName),
+                    rename(code, code.b(i), packed, end, slotOf, slotName));
+        }
+        return code;
+    }
+
+    /**
+     * Slots used by the last {@link #allocate} call for the names it packed.
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    // helpers
+
+    private static void extend(long operand, int position, boolean[] packed, int[] start, int[] end) {
+        if (!Operand.isVariable(operand)) return;
+        int x = Operand.payload(operand);
+        if (packed[x]) extend(x, position, start, end);
+    }
+
+    private static void extend(int x, int position, int[] start, int[] end) {
+        if (position < start[x]) start[x] = position;
+        if (position > end[x]) end[x] = position;
+    }
+
+    /**
+     * True if the instruction at {@code position} assigns {@code x}
+     * without reading it, so a slot whose last use is there can be reused.
+     */
+    private static boolean startsWithWrite(IrProgram code, int x, int position) {
+        if (!IrOp.definesDst(code.op(position)) || Operand.payload(code.dst(position)) != x) return false;
+        return !reads(code.a(position), x) && !reads(code.b(position), x);
+    }
+
+    private static boolean reads(long operand, int x) {
+        return Operand.isVariable(operand) && Operand.payload(operand) == x;
+    }
+
+    private static long rename(IrProgram code, long operand, boolean[] packed,
+                               int[] end, int[] slotOf, int[] slotName) {
+        if (!Operand.isVariable(operand)) return operand;
+        int x = Operand.payload(operand);
+        if (!packed[x] || end[x] < 0) return operand;
+        return code.variableOperand(slotName[slotOf[x]]);
+    }
+
+    private static void siftUp(int[] heap, int k, int[] key) {
+        int x = heap[k];
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (key[heap[parent]] <= key[x]) break;
+            heap[k] = heap[parent];
+            k = parent;
+        }
+        heap[k] = x;
+    }
+
+    private static void siftDown(int[] heap, int size, int[] key) {
+        if (size == 0) return;
+        int x = heap[0];
+        int k = 0;
+        while (true) {
+            int child = 2 * k + 1;
+            if (child >= size) break;
+            if (child + 1 < size && key[heap[child + 1]] < key[heap[child]]) child++;
+            if (key[x] <= key[heap[child]]) break;
+            heap[k] = heap[child];
+            k = child;
+        }
+        heap[k] = x;
+    }
+}
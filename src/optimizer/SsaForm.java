@@ -0,0 +1,364 @@
+package optimizer;
+
+import ir.IrOp;
+import ir.IrProgram;
+import ir.Operand;
+
+import java.util.Arrays;
+
+/**
+ * Static single assignment numbering of an {@link IrProgram}, as an
+ * analysis: the program itself is not rewritten.
+ *
+ * Every definition gets its own value ID, and every variable read is
+ * mapped to the one value that reaches it. Where several definitions meet,
+ * a phi is placed (at the iterated dominance frontier of the definitions,
+ * and only where the variable is live) whose arguments are the values
+ * arriving along each predecessor edge. Each variable also has an entry
+ * value, its initial zero, whose ID is the variable ID itself. Without a
+ * {@link Liveness} the form is minimal rather than pruned: phis are also
+ * placed where the variable is dead, so a variable's current value is
+ * known at every point, not just where it is read. When the
+ * entry block is a loop header, its phis also receive the entry value of
+ * their variable from outside the program, in addition to their
+ * arguments.
+ *
+ * Value IDs: [0, variableCount) entry values, then one per phi, then one
+ * per defining instruction.
+ */
+public final class SsaForm {
+
+    public static final int NO_VALUE = -1;
+
+    private final ControlFlowGraph cfg;
+    private final DominatorTree dominators;
+    private final int variableCount;
+
+    private final int[] phiStart;    // block -> first phi, compressed
+    private final int[] phiVariable;
+    private final int[] phiArgs;     // phi p's arguments at [argStart[p], argStart[p] + predecessorCount)
+    private final int[] argStart;
+    private final int firstPhiValue;
+    private final int firstDefValue;
+    private final int[] defValue;    // instruction -> value, or NO_VALUE
+    private final int[] defInstruction; // value - firstDefValue -> instruction
+    private final int[] useA;        // instruction -> value read by operand a, or NO_VALUE
+    private final int[] useB;
+    private final int valueCount;
+    private final int[] valueVariable;
+
+    private int[] userStart;          // value -> users, built on first use
+    private int[] users;
+
+    /**
+     * Builds minimal SSA, with phis wherever definitions meet.
+     */
+    public SsaForm(DominatorTree dominators) {
+        this(dominators, null);
+    }
+
+    /**
+     * Builds pruned SSA, with phis only where the variable is live.
+     */
+    public SsaForm(DominatorTree dominators, Liveness liveness) {
+        this.dominators = dominators;
+        this.cfg = dominators.cfg();
+        IrProgram ir = cfg.program();
+        int n = cfg.blockCount();
+        variableCount = ir.variableCount();
+
+        // Blocks defining each variable, compressed; the entry defines every variable
+        int[] defStart = new int[variableCount + 1];
+        for (int i = 0; i < ir.size(); i++) {
+            if (IrOp.definesDst(ir.op(i))) defStart[Operand.payload(ir.dst(i)) + 1]++;
+        }
+        for (int v = 0; v < variableCount; v++) defStart[v + 1] += defStart[v];
+        int[] defBlocks = new int[defStart[variableCount]];
+        int[] fill = Arrays.copyOf(defStart, variableCount);
+        for (int i = 0; i < ir.size(); i++) {
+            if (IrOp.definesDst(ir.op(i))) defBlocks[fill[Operand.payload(ir.dst(i))]++] = cfg.blockOf(i);
+        }
+
+        // Phi placement, per variable that can be live across blocks
+        int[] hasPhi = new int[n];    // stamped with variable + 1
+        int[] inWork = new int[n];
+        int[] work = new int[n + 1];
+        int[] placedBlock = new int[16];
+        int[] placedVar = new int[16];
+        int placed = 0;
+        for (int v = 0; v < variableCount; v++) {
+            if (n == 0 || (liveness != null && !liveness.isGlobal(v))) continue;
+            int stamp = v + 1;
+            int top = 0;
+            work[top++] = 0;
+            inWork[0] = stamp;
+            for (int k = defStart[v]; k < defStart[v + 1]; k++) {
+                int b = defBlocks[k];
+                if (inWork[b] != stamp) {
+                    inWork[b] = stamp;
+                    work[top++] = b;
+                }
+            }
+            while (top > 0) {
+                int x = work[--top];
+                if (!dominators.isReachable(x)) continue;
+                for (int y : dominators.frontier(x)) {
+                    if (hasPhi[y] == stamp || (liveness != null && !liveness.isLiveIn(y, v))) continue;
+                    hasPhi[y] = stamp;
+                    if (placed == placedBlock.length) {
+                        placedBlock = Arrays.copyOf(placedBlock, placed * 2);
+                        placedVar = Arrays.copyOf(placedVar, placed * 2);
+                    }
+                    placedBlock[placed] = y;
+                    placedVar[placed++] = v;
+                    if (inWork[y] != stamp) {
+                        inWork[y] = stamp;
+                        work[top++] = y;
+                    }
+                }
+            }
+        }
+
+        // Group phis by block
+        phiStart = new int[n + 1];
+        for (int p = 0; p < placed; p++) phiStart[placedBlock[p] + 1]++;
+        for (int b = 0; b < n; b++) phiStart[b + 1] += phiStart[b];
+        phiVariable = new int[placed];
+        fill = Arrays.copyOf(phiStart, n);
+        for (int p = 0; p < placed; p++) phiVariable[fill[placedBlock[p]]++] = placedVar[p];
+        argStart = new int[placed + 1];
+        for (int b = 0; b < n; b++) {
+            for (int p = phiStart[b]; p < phiStart[b + 1]; p++) {
+                argStart[p + 1] = argStart[p] + cfg.predecessorCount(b);
+            }
+        }
+        phiArgs = new int[argStart[placed]];
+        Arrays.fill(phiArgs, NO_VALUE);
+
+        // Value IDs
+        firstPhiValue = variableCount;
+        firstDefValue = firstPhiValue + placed;
+        defValue = new int[ir.size()];
+        int value = firstDefValue;
+        for (int i = 0; i < ir.size(); i++) {
+            defValue[i] = IrOp.definesDst(ir.op(i)) ? value++ : NO_VALUE;
+        }
+        valueCount = value;
+        defInstruction = new int[valueCount - firstDefValue];
+        for (int i = 0; i < ir.size(); i++) {
+            if (defValue[i] != NO_VALUE) defInstruction[defValue[i] - firstDefValue] = i;
+        }
+        valueVariable = new int[valueCount];
+        for (int v = 0; v < variableCount; v++) valueVariable[v] = v;
+        for (int p = 0; p < placed; p++) valueVariable[firstPhiValue + p] = phiVariable[p];
+        for (int i = 0; i < ir.size(); i++) {
+            if (defValue[i] != NO_VALUE) valueVariable[defValue[i]] = Operand.payload(ir.dst(i));
+        }
+
+        useA = new int[ir.size()];
+        useB = new int[ir.size()];
+        Arrays.fill(useA, NO_VALUE);
+        Arrays.fill(useB, NO_VALUE);
+        rename();
+    }
+
+    /**
+     * Walks the dominator tree keeping each variable's current value,
+     * undoing a block's definitions when leaving its subtree.
+     */
+    private void rename() {
+        IrProgram ir = cfg.program();
+        int n = cfg.blockCount();
+        if (n == 0) return;
+        int[] current = new int[variableCount];
+        for (int v = 0; v < variableCount; v++) current[v] = v;
+        int[] logVar = new int[16];
+        int[] logOld = new int[16];
+        int log = 0;
+
+        int[] stack = new int[n];
+        int[] next = new int[n];
+        int[] mark = new int[n];
+        int sp = 0;
+        stack[sp++] = 0;
+        boolean entering = true;
+        while (sp > 0) {
+            int b = stack[sp - 1];
+            if (entering) {
+                mark[b] = log;
+                for (int p = phiStart[b]; p < phiStart[b + 1]; p++) {
+                    if (log + 1 >= logVar.length) {
+                        logVar = Arrays.copyOf(logVar, logVar.length * 2);
+                        logOld = Arrays.copyOf(logOld, logOld.length * 2);
+                    }
+                    int v = phiVariable[p];
+                    logVar[log] = v;
+                    logOld[log++] = current[v];
+                    current[v] = firstPhiValue + p;
+                }
+                for (int i = cfg.start(b); i < cfg.end(b); i++) {
+                    if (Operand.isVariable(ir.a(i))) useA[i] = current[Operand.payload(ir.a(i))];
+                    if (Operand.isVariable(ir.b(i))) useB[i] = current[Operand.payload(ir.b(i))];
+                    if (defValue[i] != NO_VALUE) {
+                        if (log + 1 >= logVar.length) {
+                            logVar = Arrays.copyOf(logVar, logVar.length * 2);
+                            logOld = Arrays.copyOf(logOld, logOld.length * 2);
+                        }
+                        int v = Operand.payload(ir.dst(i));
+                        logVar[log] = v;
+                        logOld[log++] = current[v];
+                        current[v] = defValue[i];
+                    }
+                }
+                for (int k = 0; k < cfg.successorCount(b); k++) {
+                    int s = cfg.successor(b, k);
+                    int pred = predecessorIndex(s, b);
+                    for (int p = phiStart[s]; p < phiStart[s + 1]; p++) {
+                        phiArgs[argStart[p] + pred] = current[phiVariable[p]];
+                    }
+                }
+            }
+            if (next[b] < dominators.childCount(b)) {
+                stack[sp++] = dominators.child(b, next[b]++);
+                entering = true;
+            } else {
+                while (log > mark[b]) {
+                    log--;
+                    current[logVar[log]] = logOld[log];
+                }
+                sp--;
+                entering = false;
+            }
+        }
+    }
+
+    public ControlFlowGraph cfg() {
+        return cfg;
+    }
+
+    public DominatorTree dominators() {
+        return dominators;
+    }
+
+    public int valueCount() {
+        return valueCount;
+    }
+
+    /**
+     * The variable a value is a version of.
+     */
+    public int variable(int value) {
+        return valueVariable[value];
+    }
+
+    public boolean isEntryValue(int value) {
+        return value < firstPhiValue;
+    }
+
+    /**
+     * The phi defining a value, or -1 if it is not a phi.
+     */
+    public int phiOf(int value) {
+        return (value >= firstPhiValue && value < firstDefValue) ? value - firstPhiValue : -1;
+    }
+
+    /**
+     * The instruction defining a value, or -1 for entry values and phis.
+     */
+    public int definition(int value) {
+        return (value >= firstDefValue) ? defInstruction[value - firstDefValue] : -1;
+    }
+
+    /**
+     * The value instruction {@code i} defines, or {@link #NO_VALUE}.
+     */
+    public int defValue(int instruction) {
+        return defValue[instruction];
+    }
+
+    /**
+     * The value operand a of instruction {@code i} reads, or {@link #NO_VALUE}
+     * if it is not a variable or the instruction is unreachable.
+     */
+    public int useA(int instruction) {
+        return useA[instruction];
+    }
+
+    public int useB(int instruction) {
+        return useB[instruction];
+    }
+
+    public int phiStart(int block) {
+        return phiStart[block];
+    }
+
+    public int phiEnd(int block) {
+        return phiStart[block + 1];
+    }
+
+    public int phiCount() {
+        return phiVariable.length;
+    }
+
+    public int phiValue(int phi) {
+        return firstPhiValue + phi;
+    }
+
+    public int phiVariable(int phi) {
+        return phiVariable[phi];
+    }
+
+    /**
+     * The value flowing into a phi from the block's {@code pred}-th
+     * predecessor, or {@link #NO_VALUE} if that predecessor is unreachable.
+     */
+    public int phiArg(int phi, int pred) {
+        return phiArgs[argStart[phi] + pred];
+    }
+
+    /**
+     * Position of {@code pred} in {@code block}'s predecessor list.
+     */
+    public int predecessorIndex(int block, int pred) {
+        for (int k = 0; k < cfg.predecessorCount(block); k++) {
+            if (cfg.predecessor(block, k) == pred) return k;
+        }
+        throw new IllegalArgumentException(pred + " is not a predecessor of " + block);
+    }
+
+    /**
+     * Everything reading {@code value}: instruction indices, and phis
+     * encoded as {@code -(phi + 1)}.
+     */
+    public int[] users(int value) {
+        if (users == null) {
+            buildUsers();
+        }
+        return Arrays.copyOfRange(users, userStart[value], userStart[value + 1]);
+    }
+
+    private void buildUsers() {
+        int[] start = new int[valueCount + 1];
+        for (int i = 0; i < useA.length; i++) {
+            if (useA[i] != NO_VALUE) start[useA[i] + 1]++;
+            if (useB[i] != NO_VALUE && useB[i] != useA[i]) start[useB[i] + 1]++;
+        }
+        for (int arg : phiArgs) {
+            if (arg != NO_VALUE) start[arg + 1]++;
+        }
+        for (int v = 0; v < valueCount; v++) start[v + 1] += start[v];
+        int[] list = new int[start[valueCount]];
+        int[] fill = Arrays.copyOf(start, valueCount);
+        for (int i = 0; i < useA.length; i++) {
+            if (useA[i] != NO_VALUE) list[fill[useA[i]]++] = i;
+            if (useB[i] != NO_VALUE && useB[i] != useA[i]) list[fill[useB[i]]++] = i;
+        }
+        for (int p = 0; p < phiVariable.length; p++) {
+            for (int k = argStart[p]; k < argStart[p + 1]; k++) {
+                if (phiArgs[k] != NO_VALUE) list[fill[phiArgs[k]]++] = -(p + 1);
+            }
+        }
+        userStart = start;
+        users = list;
+    }
+}
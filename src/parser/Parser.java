@@ -1,6 +1,8 @@
 package parser;
 
+import lexer.Lexer;
 import lexer.Token;
+import lexer.TokenBuffer;
 import lexer.TokenType;
 import parser.ast.*; // Import all our new AST classes
 
@@ -16,21 +18,58 @@ public class Parser {
         }
     }
 
-    private final List<Token> tokens;
+    private final TokenBuffer tokens;
+    private final Lexer lexer; // null when the buffer is already complete
     private int current = 0;
 
     public Parser(List<Token> tokens) {
+        this(TokenBuffer.of(tokens));
+    }
+
+    /**
+     * Parses straight from a token buffer. Token objects are only created
+     * for the tokens the AST keeps (names and operators) and for errors.
+     */
+    public Parser(TokenBuffer tokens) {
         this.tokens = tokens;
+        this.lexer = null;
+    }
+
+    /**
+     * Pulls tokens from the lexer as they are needed instead of expecting a
+     * fully scanned buffer. Use {@link #hasNext()} and {@link #next()} to
+     * keep only one top-level statement's tokens in memory at a time.
+     */
+    public Parser(Lexer lexer) {
+        this.tokens = lexer.buffer();
+        this.lexer = lexer;
     }
 
     public List<Stmt> parse() {
         List<Stmt> statements = new ArrayList<>();
-        while (!isAtEnd()) {
-            statements.add(statement());
+        while (hasNext()) {
+            statements.add(next());
         }
         return statements;
     }
 
+    public boolean hasNext() {
+        return !isAtEnd();
+    }
+
+    /**
+     * Parses the next top-level statement. When pulling from a lexer, the
+     * tokens it consumed are dropped from the buffer afterwards.
+     */
+    public Stmt next() {
+        Stmt statement = statement();
+        if (lexer != null) {
+            tokens.discardBefore(current);
+            current = 0;
+        }
+        return statement;
+    }
+
     private Stmt statement() {
         if (match(TokenType.INT)) {
             return declaration();
@@ -59,14 +98,14 @@ public class Parser {
 
     private Stmt declaration() {
         Token name = consume(TokenType.IDENTIFIER, "Expect variable name after 'int'.");
-        consume(TokenType.SEMICOLON, "Expect ';' after variable declaration.");
+        expect(TokenType.SEMICOLON, "Expect ';' after variable declaration.");
         return new VarDeclStmt(name);
     }
 
     private Stmt ifStatement() {
-        consume(TokenType.LPAREN, "Expect '(' after 'if'.");
+        expect(TokenType.LPAREN, "Expect '(' after 'if'.");
         Expr condition = expression(); // We will write this next!
-        consume(TokenType.RPAREN, "Expect ')' after if condition.");
+        expect(TokenType.RPAREN, "Expect ')' after if condition.");
 
         Stmt thenBranch = statement();
         Stmt elseBranch = null;
@@ -78,27 +117,27 @@ public class Parser {
     }
 
     private Stmt whileStatement() {
-        consume(TokenType.LPAREN, "Expect '(' after 'while'.");
+        expect(TokenType.LPAREN, "Expect '(' after 'while'.");
         Expr condition = expression(); // We will write this next!
-        consume(TokenType.RPAREN, "Expect ')' after while condition.");
+        expect(TokenType.RPAREN, "Expect ')' after while condition.");
         Stmt body = statement();
 
         return new WhileStmt(condition, body);
     }
 
     private Stmt printStatement() {
-        consume(TokenType.LPAREN, "Expect '(' after 'print'.");
+        expect(TokenType.LPAREN, "Expect '(' after 'print'.");
         Token name = consume(TokenType.IDENTIFIER, "Expect variable name to print.");
-        consume(TokenType.RPAREN, "Expect ')' after variable name.");
-        consume(TokenType.SEMICOLON, "Expect ';' after print statement.");
+        expect(TokenType.RPAREN, "Expect ')' after variable name.");
+        expect(TokenType.SEMICOLON, "Expect ';' after print statement.");
         return new PrintStmt(name);
     }
 
     private Stmt readStatement() {
-        consume(TokenType.LPAREN, "Expect '(' after 'read'.");
+        expect(TokenType.LPAREN, "Expect '(' after 'read'.");
         Token name = consume(TokenType.IDENTIFIER, "Expect variable name to read into.");
-        consume(TokenType.RPAREN, "Expect ')' after variable name.");
-        consume(TokenType.SEMICOLON, "Expect ';' after read statement.");
+        expect(TokenType.RPAREN, "Expect ')' after variable name.");
+        expect(TokenType.SEMICOLON, "Expect ';' after read statement.");
         return new ReadStmt(name);
     }
 
@@ -108,9 +147,9 @@ public class Parser {
         // So we just grab the token...
         Token name = consume(TokenType.IDENTIFIER, "Expect variable name for assignment.");
 
-        consume(TokenType.ASSIGN, "Expect '=' after variable name.");
+        expect(TokenType.ASSIGN, "Expect '=' after variable name.");
         Expr value = expression(); // We will write this next!
-        consume(TokenType.SEMICOLON, "Expect ';' after assignment.");
+        expect(TokenType.SEMICOLON, "Expect ';' after assignment.");
 
         return new AssignStmt(name, value);
     }
@@ -122,7 +161,7 @@ public class Parser {
             statements.add(statement());
         }
 
-        consume(TokenType.RBRACE, "Expect '}' after block.");
+        expect(TokenType.RBRACE, "Expect '}' after block.");
         return statements;
     }
 
@@ -161,8 +200,8 @@ public class Parser {
 
     private Expr primary() {
         if (match(TokenType.NUMBER)) {
-            // Convert the number string to an Integer
-            Object value = Integer.parseInt(previous().lexeme);
+            // Convert the number straight from the source text
+            Object value = tokens.intValue(current - 1);
             return new LiteralExpr(value);
         }
 
@@ -172,7 +211,7 @@ public class Parser {
 
         if (match(TokenType.LPAREN)) {
             Expr expr = expression(); // Recursive call!
-            consume(TokenType.RPAREN, "Expect ')' after expression.");
+            expect(TokenType.RPAREN, "Expect ')' after expression.");
             return new GroupingExpr(expr);
         }
 
@@ -181,41 +220,49 @@ public class Parser {
     }
 
     private Token consume(TokenType type, String message) {
-        if (check(type)) {
-            return advance();
+        expect(type, message);
+        return previous();
+    }
+
+    /**
+     * Like {@link #consume} for tokens the AST does not keep, so no Token is built.
+     */
+    private void expect(TokenType type, String message) {
+        if (!check(type)) {
+            throw new ParseError(peek(), message);
         }
-        throw new ParseError(peek(), message);
+        current++;
     }
 
-    private boolean match(TokenType... types) {
-        for (TokenType type : types) {
-            if (check(type)) {
-                advance(); // Consume the token
-                return true;
-            }
+    private boolean match(TokenType type) {
+        if (check(type)) {
+            current++; // Consume the token
+            return true;
         }
         return false;
     }
 
-    private boolean check(TokenType type) {
-        if (isAtEnd()) return false;
-        return peek().type == type;
+    private boolean match(TokenType first, TokenType second) {
+        return match(first) || match(second);
     }
 
-    private Token advance() {
-        if (!isAtEnd()) current++;
-        return previous();
+    private boolean check(TokenType type) {
+        if (isAtEnd()) return false;
+        return tokens.type(current) == type;
     }
 
     private boolean isAtEnd() {
-        return peek().type == TokenType.EOF;
+        if (current >= tokens.size()) {
+            lexer.fill(current + 1);
+        }
+        return tokens.type(current) == TokenType.EOF;
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return tokens.token(current);
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokens.token(current - 1);
     }
 }
\ No newline at end of file
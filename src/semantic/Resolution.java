@@ -0,0 +1,98 @@
+package semantic;
+
+import parser.ast.AssignStmt;
+import parser.ast.PrintStmt;
+import parser.ast.ReadStmt;
+import parser.ast.VarDeclStmt;
+import parser.ast.VariableExpr;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of name resolution: which declaration every variable
+ * reference in the AST binds to.
+ *
+ * Each declaration gets its own flat frame slot, numbered in program
+ * order, so a block variable that shadows an outer one (or reuses the name
+ * of one in a sibling block) never shares storage with it. Later phases
+ * index by slot instead of looking names up, and use {@link #name} where
+ * they still need a symbolic name.
+ */
+public class Resolution {
+
+    private final Map<Object, SymbolInfo> symbols = new IdentityHashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final BitSet declaredSymbols = new BitSet();
+
+    /**
+     * Allocates the next slot for a declaration of {@code name}.
+     */
+    int newSlot(String name, int symbolId) {
+        int slot = names.size();
+        // The first declaration of a name keeps it, so unshadowed programs read as before
+        boolean first = !declaredSymbols.get(symbolId);
+        declaredSymbols.set(symbolId);
+        names.add(first ? name : name + "$" + slot);
+        return slot;
+    }
+
+    void bind(Object node, SymbolInfo info) {
+        symbols.put(node, info);
+    }
+
+    public int slot(VariableExpr expr) {
+        return symbol(expr).slot;
+    }
+
+    public int slot(AssignStmt stmt) {
+        return symbol(stmt).slot;
+    }
+
+    public int slot(PrintStmt stmt) {
+        return symbol(stmt).slot;
+    }
+
+    public int slot(ReadStmt stmt) {
+        return symbol(stmt).slot;
+    }
+
+    public int slot(VarDeclStmt stmt) {
+        return symbol(stmt).slot;
+    }
+
+    /**
+     * A name for the slot that no other slot shares: the declared name, or
+     * {@code name$slot} for every declaration after the first of that name.
+     */
+    public String name(int slot) {
+        return names.get(slot);
+    }
+
+    /**
+     * Number of slots allocated so far, i.e. the frame size the program needs.
+     */
+    public int frameSize() {
+        return names.size();
+    }
+
+    /**
+     * Drops the per-node bindings but keeps the slots, so a long-running
+     * analysis (see {@link SemanticAnalyzer#analyzeStatement}) does not hold
+     * on to every statement it has seen.
+     */
+    public void forgetNodes() {
+        symbols.clear();
+    }
+
+    private SymbolInfo symbol(Object node) {
+        SymbolInfo info = symbols.get(node);
+        if (info == null) {
+            throw new IllegalStateException("Node was not resolved: " + node);
+        }
+        return info;
+    }
+}
@@ -4,13 +4,35 @@ import lexer.Token;
 import parser.ast.*;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 
 public class SemanticAnalyzer implements StmtVisitor<Void>, ExprVisitor<DataType> {
 
     private final SymbolTable symbolTable = new SymbolTable();
+    private final Resolution resolution = new Resolution();
+    private final Consumer<String> errorSink;
     private boolean hadError = false;
 
+    public SemanticAnalyzer() {
+        this(System.err::println);
+    }
+
+    /**
+     * @param errorSink receives each error message instead of standard error
+     */
+    public SemanticAnalyzer(Consumer<String> errorSink) {
+        this.errorSink = errorSink;
+    }
+
+
+    /**
+     * Where each variable reference checked so far resolves to. Only complete
+     * for programs that analyzed without errors.
+     */
+    public Resolution getResolution() {
+        return resolution;
+    }
 
     public boolean analyze(List<Stmt> statements) {
         hadError = false;
@@ -20,10 +42,23 @@ public class SemanticAnalyzer implements StmtVisitor<Void>, ExprVisitor<DataType
         return !hadError;
     }
 
+    /**
+     * Checks one more top-level statement, keeping the declarations seen by
+     * earlier calls. Returns false if this statement had errors.
+     */
+    public boolean analyzeStatement(Stmt statement) {
+        boolean earlierErrors = hadError;
+        hadError = false;
+        statement.accept(this);
+        boolean ok = !hadError;
+        hadError = earlierErrors || hadError;
+        return ok;
+    }
+
 
 
     private void error(Token token, String message) {
-        System.err.println("[Line " + token.lineNumber + "] Semantic Error at '" + token.lexeme + "': " + message);
+        errorSink.accept("[Line " + token.lineNumber + "] Semantic Error at '" + token.lexeme + "': " + message);
         hadError = true;
     }
 
@@ -42,11 +77,14 @@ public class SemanticAnalyzer implements StmtVisitor<Void>, ExprVisitor<DataType
 
     @Override
     public Void visitVarDeclStmt(VarDeclStmt stmt) {
-        if (symbolTable.checkCurrentScope(stmt.name.lexeme)) {
+        if (symbolTable.checkCurrentScope(stmt.name.symbolId)) {
             error(stmt.name, "Variable is already declared in this scope.");
         } else {
-            SymbolInfo info = new SymbolInfo(stmt.name.lexeme, DataType.INT);
+            Token name = stmt.name;
+            SymbolInfo info = new SymbolInfo(name.lexeme, name.symbolId, DataType.INT,
+                    resolution.newSlot(name.lexeme, name.symbolId));
             symbolTable.define(info);
+            resolution.bind(stmt, info);
         }
         return null;
     }
@@ -54,11 +92,12 @@ public class SemanticAnalyzer implements StmtVisitor<Void>, ExprVisitor<DataType
     @Override
     public Void visitAssignStmt(AssignStmt stmt) {
         // 1. Check if the variable being assigned to is declared
-        SymbolInfo info = symbolTable.lookup(stmt.name.lexeme);
+        SymbolInfo info = symbolTable.lookup(stmt.name.symbolId);
         if (info == null) {
             error(stmt.name, "Undeclared variable.");
             return null;
         }
+        resolution.bind(stmt, info);
 
         // 2. Visit the expression on the right to get its type
         DataType valueType = stmt.value.accept(this);
@@ -105,8 +144,11 @@ public class SemanticAnalyzer implements StmtVisitor<Void>, ExprVisitor<DataType
     @Override
     public Void visitPrintStmt(PrintStmt stmt) {
         // Check if the variable to print is declared
-        if (symbolTable.lookup(stmt.name.lexeme) == null) {
+        SymbolInfo info = symbolTable.lookup(stmt.name.symbolId);
+        if (info == null) {
             error(stmt.name, "Undeclared variable.");
+        } else {
+            resolution.bind(stmt, info);
         }
         return null;
     }
@@ -114,8 +156,11 @@ public class SemanticAnalyzer implements StmtVisitor<Void>, ExprVisitor<DataType
     @Override
     public Void visitReadStmt(ReadStmt stmt) {
         // Check if the variable to read into is declared
-        if (symbolTable.lookup(stmt.name.lexeme) == null) {
+        SymbolInfo info = symbolTable.lookup(stmt.name.symbolId);
+        if (info == null) {
             error(stmt.name, "Undeclared variable.");
+        } else {
+            resolution.bind(stmt, info);
         }
         return null;
     }
@@ -146,11 +191,12 @@ public class SemanticAnalyzer implements StmtVisitor<Void>, ExprVisitor<DataType
     @Override
     public DataType visitVariableExpr(VariableExpr expr) {
         // Look up the variable in the symbol table
-        SymbolInfo info = symbolTable.lookup(expr.name.lexeme);
+        SymbolInfo info = symbolTable.lookup(expr.name.symbolId);
         if (info == null) {
             error(expr.name, "Undeclared variable.");
             return DataType.INT; // Return INT to avoid cascading errors
         }
+        resolution.bind(expr, info);
 
         // Return the type we found in the table
         return info.type;
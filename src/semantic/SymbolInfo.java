@@ -9,15 +9,27 @@ public class SymbolInfo {
      * The data type of the symbol, e.g., INT.
      */
     public final String name;
+    public final int symbolId;
     public final DataType type;
 
-    public SymbolInfo(String name, DataType type) {
+    /**
+     * The symbol's frame slot, unique to this declaration (see {@link Resolution}).
+     */
+    public final int slot;
+
+    // Maintained by SymbolTable: the scope depth and the binding this one hides
+    int depth;
+    SymbolInfo shadowed;
+
+    public SymbolInfo(String name, int symbolId, DataType type, int slot) {
         this.name = name;
+        this.symbolId = symbolId;
         this.type = type;
+        this.slot = slot;
     }
 
     @Override
     public String toString() {
-        return "Symbol(name=" + name + ", type=" + type + ")";
+        return "Symbol(name=" + name + ", type=" + type + ", slot=" + slot + ")";
     }
-}
\ No newline at end of file
+}
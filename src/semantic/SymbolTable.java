@@ -1,57 +1,65 @@
 package semantic;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Stack;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+/**
+ * Maps each name, by its {@link lexer.SymbolPool} ID, to its innermost
+ * visible declaration.
+ *
+ * Rather than a stack of per-scope maps that {@link #lookup} would have to
+ * walk, there is one array of current bindings. A declaration that shadows
+ * another remembers it, and {@link #exitScope} undoes the scope's
+ * declarations in reverse, so lookups are a single array read.
+ */
 public class SymbolTable {
 
-    private final Stack<Map<String, SymbolInfo>> scopes;
-
-    public SymbolTable() {
-        this.scopes = new Stack<>();
-        enterScope(); // Create the global scope
-    }
+    private SymbolInfo[] bindings = new SymbolInfo[64];
+    // Every live declaration in order; scopeStarts[d] is where scope d begins
+    private final List<SymbolInfo> declared = new ArrayList<>();
+    private int[] scopeStarts = new int[8];
+    private int depth = 0; // 0 is the global scope
 
     public void enterScope() {
-        scopes.push(new HashMap<>());
+        if (++depth == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, depth * 2);
+        }
+        scopeStarts[depth] = declared.size();
     }
 
     public void exitScope() {
-        if (!scopes.isEmpty()) {
-            scopes.pop();
+        if (depth == 0) {
+            return; // The global scope is never left
+        }
+        for (int i = declared.size() - 1; i >= scopeStarts[depth]; i--) {
+            SymbolInfo info = declared.remove(i);
+            bindings[info.symbolId] = info.shadowed;
         }
+        depth--;
     }
 
-
     public void define(SymbolInfo info) {
-        if (scopes.isEmpty()) {
-            return; // No scope to define the symbol in
+        if (info.symbolId >= bindings.length) {
+            bindings = Arrays.copyOf(bindings, Math.max(bindings.length * 2, info.symbolId + 1));
         }
-        // Add the symbol to the map that is on top of the stack.
-        scopes.peek().put(info.name, info);
+        info.depth = depth;
+        info.shadowed = bindings[info.symbolId];
+        bindings[info.symbolId] = info;
+        declared.add(info);
     }
 
-    public SymbolInfo lookup(String name) {
-
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            Map<String, SymbolInfo> scope = scopes.get(i);
-            if (scope.containsKey(name)) {
-                return scope.get(name);
-            }
-        }
-        // Not found in any scope
-        return null;
+    public SymbolInfo lookup(int symbolId) {
+        // Not found in any scope gives null
+        return (symbolId < bindings.length) ? bindings[symbolId] : null;
     }
 
     /**
      * Checks if a symbol is defined *only* in the current (top) scope.
      * This is used to detect "variable already declared" errors.
      */
-    public boolean checkCurrentScope(String name) {
-        if (scopes.isEmpty()) {
-            return false;
-        }
-        return scopes.peek().containsKey(name);
+    public boolean checkCurrentScope(int symbolId) {
+        SymbolInfo info = lookup(symbolId);
+        return info != null && info.depth == depth;
     }
-}
\ No newline at end of file
+}
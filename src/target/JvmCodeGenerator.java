@@ -0,0 +1,295 @@
+package target;
+
+import icg.Quadruple;
+import jvm.Bytecode;
+import jvm.ClassFileWriter;
+import jvm.MethodCode;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Alternative Step 6: translates optimized TAC into a JVM class.
+ *
+ * The program becomes {@code public static void run()} and every TinyLang
+ * variable or temp becomes an int local. IFZ/GOTO/LABEL map onto native
+ * branches, and a '<' whose result is only read by the IFZ right after it
+ * is fused into a single IF_ICMPGE. PRINT and READ call {@link JvmRuntime}.
+ * A {@code main} method is added so the class file can be run directly.
+ */
+public class JvmCodeGenerator {
+
+    private static final String RUNTIME = "target/JvmRuntime";
+
+    /**
+     * @param className binary class name, e.g. "Program" or "out.Program"
+     */
+    public byte[] generate(List<Quadruple> quads, String className) {
+        String internalName = className.replace('.', '/');
+        ClassFileWriter writer = new ClassFileWriter(internalName);
+
+        Map<String, Integer> locals = collectLocals(quads);
+        if (locals.size() > 0xFFFF) {
+            throw new IllegalStateException("Too many variables for one JVM method (" + locals.size() + ").");
+        }
+        String[] types = new String[locals.size()];
+        Arrays.fill(types, "I");
+        MethodCode code = writer.newCode(types);
+
+        // Locals must be definitely assigned before the first branch target
+        for (int i = 0; i < types.length; i++) {
+            code.iconst(0);
+            code.istore(i);
+        }
+
+        Map<String, Integer> uses = countUses(quads);
+        Map<String, Integer> labelIndex = new HashMap<>();
+        for (int i = 0; i < quads.size(); i++) {
+            if (quads.get(i).op().equals("LABEL")) labelIndex.put(quads.get(i).arg1(), i);
+        }
+        Map<String, MethodCode.Label> labels = new HashMap<>();
+
+        for (int i = 0; i < quads.size(); i++) {
+            Quadruple q = quads.get(i);
+            switch (q.op()) {
+                case "=":
+                    load(code, locals, q.arg1());
+                    code.istore(locals.get(q.result()));
+                    break;
+                case "+":
+                    load(code, locals, q.arg1());
+                    load(code, locals, q.arg2());
+                    code.iadd();
+                    code.istore(locals.get(q.result()));
+                    break;
+                case "-":
+                    load(code, locals, q.arg1());
+                    load(code, locals, q.arg2());
+                    code.isub();
+                    code.istore(locals.get(q.result()));
+                    break;
+                case "<": {
+                    Quadruple next = (i + 1 < quads.size()) ? quads.get(i + 1) : null;
+                    boolean fuse = next != null
+                            && (next.op().equals("IFZ") || next.op().equals("IFNZ"))
+                            && q.result().equals(next.arg1())
+                            && (uses.getOrDefault(q.result(), 0) == 1
+                                || isDeadAfter(quads, labelIndex, i + 1, q.result()));
+                    load(code, locals, q.arg1());
+                    load(code, locals, q.arg2());
+                    if (fuse) {
+                        int opcode = next.op().equals("IFZ") ? Bytecode.IF_ICMPGE : Bytecode.IF_ICMPLT;
+                        code.jump(opcode, label(code, labels, next.arg2()));
+                        i++;
+                    } else {
+                        // r = 0; if (a < b) r = 1;  keeps the stack empty at the label
+                        MethodCode.Label skip = code.newLabel();
+                        int r = locals.get(q.result());
+                        code.jump(Bytecode.IF_ICMPGE, skip);
+                        code.iconst(1);
+                        code.istore(r);
+                        MethodCode.Label done = code.newLabel();
+                        code.jump(Bytecode.GOTO, done);
+                        code.mark(skip);
+                        code.iconst(0);
+                        code.istore(r);
+                        code.mark(done);
+                    }
+                    break;
+                }
+                case "IFZ":
+                    load(code, locals, q.arg1());
+                    code.jump(Bytecode.IFEQ, label(code, labels, q.arg2()));
+                    break;
+                case "IFNZ":
+                    load(code, locals, q.arg1());
+                    code.jump(Bytecode.IFNE, label(code, labels, q.arg2()));
+                    break;
+                case "GOTO":
+                    code.jump(Bytecode.GOTO, label(code, labels, q.arg1()));
+                    break;
+                case "LABEL":
+                    code.mark(label(code, labels, q.arg1()));
+                    break;
+                case "PRINT":
+                    load(code, locals, q.result() != null ? q.result() : q.arg1());
+                    code.invokestatic(RUNTIME, "print", "(I)V");
+                    break;
+                case "READ":
+                    code.invokestatic(RUNTIME, "read", "()I");
+                    code.istore(locals.get(q.result() != null ? q.result() : q.arg1()));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported quadruple: " + q);
+            }
+        }
+        code.returnVoid();
+        writer.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, "run", "()V", code);
+
+        MethodCode main = writer.newCode(new String[]{"[Ljava/lang/String;"});
+        main.invokestatic(internalName, "run", "()V");
+        main.returnVoid();
+        writer.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC,
+                "main", "([Ljava/lang/String;)V", main);
+
+        return writer.toByteArray();
+    }
+
+    /**
+     * Writes {@code <outputDir>/<package dirs>/<Name>.class} and returns its path.
+     */
+    public Path writeClassFile(List<Quadruple> quads, String className, Path outputDir) throws IOException {
+        Path file = outputDir.resolve(className.replace('.', '/') + ".class");
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.write(file, generate(quads, className));
+        return file;
+    }
+
+    /**
+     * Defines a generated class in a fresh class loader and returns its run method.
+     */
+    public static Runnable load(String className, byte[] classBytes) {
+        ClassLoader loader = new ClassLoader(JvmCodeGenerator.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                if (name.equals(className)) {
+                    return defineClass(name, classBytes, 0, classBytes.length);
+                }
+                throw new ClassNotFoundException(name);
+            }
+        };
+        try {
+            Class<?> cls = loader.loadClass(className);
+            MethodHandle run = MethodHandles.publicLookup()
+                    .findStatic(cls, "run", MethodType.methodType(void.class));
+            return () -> {
+                try {
+                    run.invokeExact();
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            };
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not load generated class " + className, e);
+        }
+    }
+
+    // helpers
+
+    private static Map<String, Integer> collectLocals(List<Quadruple> quads) {
+        Map<String, Integer> locals = new LinkedHashMap<>();
+        for (Quadruple q : quads) {
+            String op = q.op();
+            if (op.equals("LABEL") || op.equals("GOTO")) continue;
+            addLocal(locals, q.arg1());
+            if (!op.equals("IFZ") && !op.equals("IFNZ")) {
+                addLocal(locals, q.arg2());
+            }
+            addLocal(locals, q.result());
+        }
+        return locals;
+    }
+
+    private static void addLocal(Map<String, Integer> locals, String name) {
+        if (name != null && !isIntegerLiteral(name) && !locals.containsKey(name)) {
+            locals.put(name, locals.size());
+        }
+    }
+
+    private static Map<String, Integer> countUses(List<Quadruple> quads) {
+        Map<String, Integer> uses = new HashMap<>();
+        for (Quadruple q : quads) {
+            String op = q.op();
+            if (op.equals("LABEL") || op.equals("GOTO") || op.equals("READ")) continue;
+            if (q.arg1() != null) uses.merge(q.arg1(), 1, Integer::sum);
+            if (q.arg2() != null && !op.equals("IFZ") && !op.equals("IFNZ")) uses.merge(q.arg2(), 1, Integer::sum);
+        }
+        return uses;
+    }
+
+    /**
+     * True if no path out of {@code quads[at]}, its jump included, reads
+     * {@code name} before assigning it, following at most
+     * {@link PeepholeOptimizer#SEARCH_LIMIT} quads. Needed once temps share names (see optimizer.SlotAllocator).
+     */
+    private static boolean isDeadAfter(List<Quadruple> quads, Map<String, Integer> labelIndex,
+                                       int at, String name) {
+        int[] work = new int[PeepholeOptimizer.SEARCH_LIMIT];
+        BitSet seen = new BitSet();
+        int top = 0;
+        int steps = 0;
+        work[top++] = at + 1;
+        String branch = quads.get(at).op();
+        if (branch.equals("IFZ") || branch.equals("IFNZ")) {
+            Integer target = labelIndex.get(quads.get(at).arg2());
+            if (target == null) return false;
+            work[top++] = target;
+        }
+        while (top > 0) {
+            int i = work[--top];
+            while (i < quads.size()) {
+                if (++steps > PeepholeOptimizer.SEARCH_LIMIT) return false;
+                Quadruple q = quads.get(i);
+                String op = q.op();
+                if (op.equals("LABEL")) {
+                    if (seen.get(i)) break;
+                    seen.set(i);
+                    i++;
+                    continue;
+                }
+                if (op.equals("GOTO") || op.equals("IFZ") || op.equals("IFNZ")) {
+                    if (!op.equals("GOTO") && name.equals(q.arg1())) return false;
+                    Integer target = labelIndex.get(op.equals("GOTO") ? q.arg1() : q.arg2());
+                    if (target == null) return false;
+                    if (op.equals("GOTO")) {
+                        i = target;
+                        continue;
+                    }
+                    if (top == work.length) return false;
+                    work[top++] = target;
+                    i++;
+                    continue;
+                }
+                if (op.equals("READ")) {
+                    if (name.equals(q.result() != null ? q.result() : q.arg1())) break;
+                    i++;
+                    continue;
+                }
+                if (name.equals(q.arg1()) || name.equals(q.arg2())) return false;
+                if (name.equals(q.result())) break;
+                i++;
+            }
+        }
+        return true;
+    }
+
+    private static void load(MethodCode code, Map<String, Integer> locals, String operand) {
+        if (isIntegerLiteral(operand)) {
+            code.iconst(Integer.parseInt(operand));
+        } else {
+            code.iload(locals.get(operand));
+        }
+    }
+
+    private static MethodCode.Label label(MethodCode code, Map<String, MethodCode.Label> labels, String name) {
+        return labels.computeIfAbsent(name, n -> code.newLabel());
+    }
+
+    private static boolean isIntegerLiteral(String s) {
+        return s != null && s.matches("-?\\d+");
+    }
+}
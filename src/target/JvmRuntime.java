@@ -0,0 +1,42 @@
+package target;
+
+import vm.StdIO;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * PRINT/READ support for classes generated by {@link JvmCodeGenerator}.
+ * Defaults to the console; call {@link #bind} to redirect.
+ */
+public final class JvmRuntime {
+
+    private static volatile IntSupplier input;
+    private static volatile IntConsumer output = StdIO.stdout();
+
+    private JvmRuntime() {
+    }
+
+    public static void bind(IntSupplier in, IntConsumer out) {
+        input = in;
+        output = out;
+    }
+
+    public static void print(int value) {
+        output.accept(value);
+    }
+
+    public static int read() {
+        IntSupplier in = input;
+        if (in == null) {
+            // Only wrap System.in once somebody actually reads
+            synchronized (JvmRuntime.class) {
+                if (input == null) {
+                    input = StdIO.stdin();
+                }
+                in = input;
+            }
+        }
+        return in.getAsInt();
+    }
+}
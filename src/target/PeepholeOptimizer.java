@@ -0,0 +1,164 @@
+package target;
+
+import ir.IrProgram;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Peephole pass over the stack assembly from {@link TargetCodeGeneration}.
+ *
+ * Each quad is translated on its own, so every intermediate value goes
+ * through memory even when the next instruction just pushes it back.
+ * Instructions are appended to the output one at a time and the rules are
+ * matched against its tail, so a rewrite that exposes another one is
+ * caught straight away:
+ * <ul>
+ * <li>{@code STORE t; LOAD t} for a temp that is not read again before
+ * being overwritten is dropped, leaving the value on the stack;</li>
+ * <li>{@code LOAD x; STORE x} is dropped;</li>
+ * <li>a {@code JMP} to one of the labels right after it is dropped;</li>
+ * <li>instructions after a {@code JMP} and before the next label can
+ * never run and are dropped.</li>
+ * </ul>
+ * Whether a temp is read again is decided by following the code forward
+ * from the LOAD, through jumps, for up to {@link #SEARCH_LIMIT}
+ * instructions; a temp with just that one LOAD needs no search. Temps
+ * are recognized by TacGenerator's {@code $t} prefix, which no variable
+ * can have, and must not be read outside the code passed in, which holds
+ * for a whole program and for a single statement's code from TacGenerator.
+ */
+public class PeepholeOptimizer {
+
+    /** Instructions followed when looking for a later read of a temp. */
+    public static final int SEARCH_LIMIT = 1024;
+
+    private List<String> asm;
+    private Map<String, Integer> loads;
+    private Map<String, Integer> labels;
+    private int[] work;    // pending branch targets of a search
+    private int[] seen;    // label index -> stamp of the last search to pass it
+    private int stamp;
+
+    public List<String> optimize(List<String> asm) {
+        this.asm = asm;
+        loads = new HashMap<>();
+        labels = new HashMap<>();
+        work = new int[SEARCH_LIMIT];
+        seen = new int[asm.size()];
+        stamp = 0;
+        for (int i = 0; i < asm.size(); i++) {
+            String line = asm.get(i);
+            if (line.startsWith("LOAD ")) loads.merge(operand(line), 1, Integer::sum);
+            if (line.startsWith("LABEL ")) labels.put(operand(line), i);
+        }
+
+        List<String> out = new ArrayList<>(asm.size());
+        int[] source = new int[asm.size()];   // out index -> asm index
+        for (int i = 0; i < asm.size(); i++) {
+            String line = asm.get(i);
+            boolean label = line.startsWith("LABEL ");
+            if (!label && !out.isEmpty() && out.get(out.size() - 1).startsWith("JMP ")) {
+                continue; // unreachable
+            }
+            if (label) {
+                dropJumpTo(out, operand(line));
+                out.add(line);
+                source[out.size() - 1] = i;
+                continue;
+            }
+            out.add(line);
+            source[out.size() - 1] = i;
+            collapse(out, source);
+        }
+        this.asm = null;
+        loads = null;
+        labels = null;
+        work = null;
+        seen = null;
+        return out;
+    }
+
+    /**
+     * Applies the pair rules to the end of {@code out} until none match.
+     */
+    private void collapse(List<String> out, int[] source) {
+        while (out.size() >= 2) {
+            String first = out.get(out.size() - 2);
+            String second = out.get(out.size() - 1);
+            boolean forward = first.startsWith("STORE ") && second.startsWith("LOAD ")
+                    && operand(first).equals(operand(second))
+                    && IrProgram.isTempName(operand(first))
+                    && isDeadAfter(operand(first), source[out.size() - 1]);
+            boolean noOp = first.startsWith("LOAD ") && second.startsWith("STORE ")
+                    && operand(first).equals(operand(second));
+            if (!forward && !noOp) return;
+            out.remove(out.size() - 1);
+            out.remove(out.size() - 1);
+        }
+    }
+
+    /**
+     * True if no path from just after {@code asm[at]} reads {@code temp}
+     * before writing it.
+     */
+    private boolean isDeadAfter(String temp, int at) {
+        if (loads.getOrDefault(temp, 0) == 1) return true;
+        stamp++;
+        int top = 0;
+        int steps = 0;
+        work[top++] = at + 1;
+        while (top > 0) {
+            int pc = work[--top];
+            while (pc < asm.size()) {
+                if (++steps > SEARCH_LIMIT) return false;
+                String line = asm.get(pc);
+                if (line.startsWith("LABEL ")) {
+                    // Paths meet at labels, so each only needs following once
+                    if (seen[pc] == stamp) break;
+                    seen[pc] = stamp;
+                    pc++;
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                String op = (space < 0) ? line : line.substring(0, space);
+                if (op.equals("LOAD") && operand(line).equals(temp)) return false;
+                if ((op.equals("STORE") || op.equals("READ")) && operand(line).equals(temp)) break;
+                if (op.equals("JMP") || op.equals("JZ") || op.equals("JNZ")) {
+                    Integer target = labels.get(operand(line));
+                    if (target == null) return false; // leaves the code we were given
+                    if (op.equals("JMP")) {
+                        pc = target;
+                        continue;
+                    }
+                    if (top == work.length) return false;
+                    work[top++] = target;
+                }
+                pc++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes a {@code JMP label} that only has labels between it and
+     * where {@code label} is about to be placed.
+     */
+    private static void dropJumpTo(List<String> out, String label) {
+        int k = out.size() - 1;
+        while (k >= 0 && out.get(k).startsWith("LABEL ")) k--;
+        if (k < 0 || !out.get(k).startsWith("JMP ")) return;
+        String target = operand(out.get(k));
+        boolean next = target.equals(label);
+        for (int j = k + 1; j < out.size() && !next; j++) {
+            next = operand(out.get(j)).equals(target);
+        }
+        if (next) out.remove(k);
+    }
+
+    private static String operand(String line) {
+        return line.substring(line.indexOf(' ') + 1);
+    }
+}
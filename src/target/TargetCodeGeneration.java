@@ -1,7 +1,9 @@
 package target;
 
-// Use the correct package name for your Quadruple
 import icg.Quadruple;
+import ir.IrOp;
+import ir.IrProgram;
+import ir.Operand;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -26,96 +28,87 @@ import java.util.List;
 public class TargetCodeGeneration {
 
     public List<String> generate(List<Quadruple> quads) {
-        List<String> asm = new ArrayList<>();
+        return generate(IrProgram.fromQuads(quads));
+    }
+
+    public List<String> generate(IrProgram ir) {
+        List<String> asm = new ArrayList<>(ir.size() * 3);
 
-        for (Quadruple q : quads) {
-            String op = safe(q.op());
-            String a1 = q.arg1();
-            String a2 = q.arg2();
-            String r  = q.result();
+        for (int i = 0; i < ir.size(); i++) {
+            long a1 = ir.a(i);
+            long a2 = ir.b(i);
 
-            switch (op) {
+            switch (ir.op(i)) {
 
                 // ---- assignment ----
-                case "=": { // Changed from ASSIGN
-                    emitLoad(asm, a1);
-                    asm.add("STORE " + r);
+                case IrOp.COPY: {
+                    emitLoad(asm, ir, a1);
+                    asm.add("STORE " + ir.text(ir.dst(i)));
                     break;
                 }
 
                 // ---- arithmetic ----
-                case "+": { // Changed from ADD
-                    emitLoad(asm, a1);
-                    emitLoad(asm, a2);
+                case IrOp.ADD: {
+                    emitLoad(asm, ir, a1);
+                    emitLoad(asm, ir, a2);
                     asm.add("ADD");
-                    asm.add("STORE " + r);
+                    asm.add("STORE " + ir.text(ir.dst(i)));
                     break;
                 }
-                case "-": { // Changed from SUB
-                    emitLoad(asm, a1);
-                    emitLoad(asm, a2);
+                case IrOp.SUB: {
+                    emitLoad(asm, ir, a1);
+                    emitLoad(asm, ir, a2);
                     asm.add("SUB");
-                    asm.add("STORE " + r);
+                    asm.add("STORE " + ir.text(ir.dst(i)));
                     break;
                 }
-                // (Removed MUL/DIV as TinyLang doesn't have them)
 
                 // ---- relational ----
-                case "<": { // Changed from LT
-                    emitLoad(asm, a1);
-                    emitLoad(asm, a2);
+                case IrOp.LT: {
+                    emitLoad(asm, ir, a1);
+                    emitLoad(asm, ir, a2);
                     asm.add("CMP_LT"); // Pushes 1 (true) or 0 (false)
-                    asm.add("STORE " + r);
+                    asm.add("STORE " + ir.text(ir.dst(i)));
                     break;
                 }
-                // (Removed other comparison ops)
 
                 // ---- branching ----
-                case "IFZ": { // Changed from IF_FALSE
-                    // Quad is: (IFZ, t1, L0, null)
-                    emitLoad(asm, a1);
-                    asm.add("JZ " + a2); // Changed from r to a2
+                case IrOp.IFZ: {
+                    // IFZ cond label
+                    emitLoad(asm, ir, a1);
+                    asm.add("JZ " + ir.text(a2));
+                    break;
+                }
+                case IrOp.IFNZ: {
+                    emitLoad(asm, ir, a1);
+                    asm.add("JNZ " + ir.text(a2));
                     break;
                 }
 
                 // ---- gotos / labels ----
-                case "GOTO": {
-                    // Quad is: (GOTO, L1, null, null)
-                    asm.add("JMP " + a1); // Changed from r to a1
+                case IrOp.GOTO: {
+                    asm.add("JMP " + ir.text(a1));
                     break;
                 }
-                case "LABEL": {
-                    // Quad is: (LABEL, L0, null, null)
-                    asm.add("LABEL " + a1); // Changed from r to a1
+                case IrOp.LABEL: {
+                    asm.add("LABEL " + ir.text(a1));
                     break;
                 }
 
                 // ---- I/O ----
-                case "PRINT": {
-                    // Quad is: (PRINT, x, null, null)
-                    String v = (r != null) ? r : a1; // Your logic here is good
-                    emitLoad(asm, v);
+                case IrOp.PRINT: {
+                    emitLoad(asm, ir, a1);
                     asm.add("PRINT");
                     break;
                 }
-                case "READ": {
-                    // Quad is: (READ, y, null, null)
-                    String v = (r != null) ? r : a1;
-                    asm.add("READ " + v);
+                case IrOp.READ: {
+                    asm.add("READ " + ir.text(ir.dst(i)));
                     break;
                 }
 
-                // ---- fallback ----
-                default: {
-                    // Ignore DECL or NOP
-                    if (op.equals("DECL") || op.equals("NOP")) {
-                        break;
-                    }
-                    asm.add("; TODO: unrecognized op " + op
-                            + " a1=" + String.valueOf(a1)
-                            + " a2=" + String.valueOf(a2)
-                            + " r=" + String.valueOf(r));
-                }
+                default:
+                    // NOP
+                    break;
             }
         }
         return asm;
@@ -123,20 +116,11 @@ public class TargetCodeGeneration {
 
     // helpers
 
-    private void emitLoad(List<String> asm, String operand) {
-        if (operand == null || operand.equals("---") || operand.equals("null")) return;
-        if (isIntegerLiteral(operand)) {
-            asm.add("PUSH " + operand);
-        } else {
-            asm.add("LOAD " + operand);
+    private void emitLoad(List<String> asm, IrProgram ir, long operand) {
+        if (Operand.isConstant(operand)) {
+            asm.add("PUSH " + Operand.payload(operand));
+        } else if (Operand.isVariable(operand)) {
+            asm.add("LOAD " + ir.text(operand));
         }
     }
-
-    private boolean isIntegerLiteral(String s) {
-        return s != null && s.matches("-?\\d+");
-    }
-
-    private String safe(String s) {
-        return (s == null) ? "" : s;
-    }
-}
\ No newline at end of file
+}
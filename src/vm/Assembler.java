@@ -0,0 +1,169 @@
+package vm;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Two-pass assembler from the textual stack assembly of
+ * {@link target.TargetCodeGeneration} to a {@link BytecodeModule}.
+ *
+ * Pass 1 replaces runs of instructions that match a superinstruction (see
+ * {@link Opcode}) with it and assigns a code offset to every label. A run
+ * is only fused if no label points inside it; where runs overlap, the
+ * earliest one wins, and at one position the superinstruction listed first.
+ * Pass 2 encodes each instruction as an opcode word plus its operand
+ * words: variables become frame slot indices, PUSH constants become
+ * indices into the module's constant pool and jump targets become absolute
+ * code offsets.
+ */
+public class Assembler {
+
+    public BytecodeModule assemble(List<String> assembly) {
+        // Parse, noting which instructions labels point at
+        List<String> lines = new ArrayList<>();
+        List<String[]> parsed = new ArrayList<>();
+        Map<String, Integer> labelAt = new HashMap<>();  // label -> index in lines
+        BitSet targets = new BitSet();
+        for (String line : assembly) {
+            String[] parts = split(line);
+            if (parts == null) continue;
+            if (parts[0].equals("LABEL")) {
+                if (labelAt.put(operand(parts, line), lines.size()) != null) {
+                    throw new VmError("Duplicate label: " + line);
+                }
+                targets.set(lines.size());
+                continue;
+            }
+            if (Opcode.fromMnemonic(parts[0]) < 0) {
+                throw new VmError("Unknown instruction: " + line);
+            }
+            lines.add(line);
+            parsed.add(parts);
+        }
+        int n = lines.size();
+        int[] ops = new int[n];
+        for (int i = 0; i < n; i++) {
+            ops[i] = Opcode.fromMnemonic(parsed.get(i)[0]);
+        }
+
+        // Pass 1: pick superinstructions and find the code offset of every instruction
+        int[] fused = new int[n];     // opcode emitted for the run starting here
+        int[] offset = new int[n + 1];
+        int pc = 0;
+        for (int i = 0; i < n; ) {
+            int op = superinstructionAt(ops, i, targets);
+            int length = Opcode.sequence(op).length;
+            fused[i] = op;
+            for (int k = 0; k < length; k++) offset[i + k] = pc;
+            pc += 1 + Opcode.operandCount(op);
+            i += length;
+        }
+        offset[n] = pc;
+
+        // Pass 2: encode, with every operand already resolved to an int
+        Map<String, Integer> slots = new HashMap<>();
+        List<String> slotNames = new ArrayList<>();
+        Map<Integer, Integer> constantIndex = new HashMap<>();
+        List<Integer> constants = new ArrayList<>();
+        int[] code = new int[pc + 1];
+        pc = 0;
+        for (int i = 0; i < n; ) {
+            int op = fused[i];
+            code[pc++] = op;
+            for (int component : Opcode.sequence(op)) {
+                String[] parts = parsed.get(i);
+                String line = lines.get(i++);
+                switch (component) {
+                    case Opcode.LOAD:
+                    case Opcode.STORE:
+                    case Opcode.READ: {
+                        String name = operand(parts, line);
+                        Integer slot = slots.get(name);
+                        if (slot == null) {
+                            slot = slotNames.size();
+                            slots.put(name, slot);
+                            slotNames.add(name);
+                        }
+                        code[pc++] = slot;
+                        break;
+                    }
+                    case Opcode.PUSH: {
+                        int value;
+                        try {
+                            value = Integer.parseInt(operand(parts, line));
+                        } catch (NumberFormatException e) {
+                            throw new VmError("Bad constant: " + line);
+                        }
+                        Integer index = constantIndex.get(value);
+                        if (index == null) {
+                            index = constants.size();
+                            constantIndex.put(value, index);
+                            constants.add(value);
+                        }
+                        code[pc++] = index;
+                        break;
+                    }
+                    case Opcode.JMP:
+                    case Opcode.JZ:
+                    case Opcode.JNZ: {
+                        Integer target = labelAt.get(operand(parts, line));
+                        if (target == null) {
+                            throw new VmError("Undefined label: " + line);
+                        }
+                        code[pc++] = offset[target];
+                        break;
+                    }
+                    default:
+                        break;
+                }
+            }
+        }
+        // Falling off the end of the program halts
+        code[pc] = Opcode.HALT;
+
+        int[] pool = new int[constants.size()];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = constants.get(i);
+        }
+        return new BytecodeModule(code, pool, slotNames.toArray(new String[0]));
+    }
+
+    // helpers
+
+    /**
+     * The first superinstruction whose sequence starts at {@code ops[i]}
+     * with no label inside it, or {@code ops[i]} itself.
+     */
+    private static int superinstructionAt(int[] ops, int i, BitSet targets) {
+        for (int op = Opcode.FIRST_SUPERINSTRUCTION; op < Opcode.COUNT; op++) {
+            int[] sequence = Opcode.sequence(op);
+            if (i + sequence.length > ops.length) continue;
+            boolean match = true;
+            for (int k = 0; k < sequence.length && match; k++) {
+                match = ops[i + k] == sequence[k] && (k == 0 || !targets.get(i + k));
+            }
+            if (match) return op;
+        }
+        return ops[i];
+    }
+
+    /**
+     * Splits an assembly line into mnemonic and operand, or null for
+     * blank lines and ';' comments.
+     */
+    private static String[] split(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith(";")) return null;
+        return trimmed.split("\\s+");
+    }
+
+    private static String operand(String[] parts, String line) {
+        if (parts.length < 2) {
+            throw new VmError("Missing operand: " + line);
+        }
+        return parts[1];
+    }
+}
@@ -0,0 +1,162 @@
+package vm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An assembled stack program: the encoded instruction stream, its constant
+ * pool and the names of the frame slots (kept for debugging only).
+ *
+ * Serialized layout (big-endian):
+ * <pre>
+ * int magic 'TLBC' | int version | int codeLength | int constantCount | int slotCount
+ * int[codeLength] code
+ * int[constantCount] constants
+ * slotCount x (short length, UTF-8 bytes) slot names
+ * </pre>
+ */
+public final class BytecodeModule {
+
+    public static final int MAGIC = 0x544C4243; // "TLBC"
+    public static final int VERSION = 2;
+
+    private static final int HEADER_BYTES = 5 * Integer.BYTES;
+
+    final int[] code;
+    final int[] constants;
+    final String[] slotNames;
+
+    public BytecodeModule(int[] code, int[] constants, String[] slotNames) {
+        this.code = code;
+        this.constants = constants;
+        this.slotNames = slotNames;
+    }
+
+    public int codeLength() {
+        return code.length;
+    }
+
+    public int constantCount() {
+        return constants.length;
+    }
+
+    public int slotCount() {
+        return slotNames.length;
+    }
+
+    /**
+     * Lists the instructions one per line with resolved operands, e.g. "12: PUSH #0 (5)".
+     */
+    public List<String> disassemble() {
+        List<String> lines = new ArrayList<>();
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc];
+            StringBuilder line = new StringBuilder().append(pc).append(": ").append(Opcode.mnemonic(op));
+            int arg = pc + 1;
+            for (int component : Opcode.sequence(op)) {
+                if (!Opcode.hasOperand(component)) continue;
+                int value = code[arg++];
+                switch (component) {
+                    case Opcode.PUSH -> line.append(" #").append(value).append(" (").append(constants[value]).append(")");
+                    case Opcode.LOAD, Opcode.STORE, Opcode.READ -> line.append(" ").append(slotNames[value]);
+                    default -> line.append(" @").append(value);
+                }
+            }
+            pc = arg;
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * Serializes the module into a byte buffer positioned at 0.
+     */
+    public ByteBuffer toByteBuffer() {
+        byte[][] names = new byte[slotNames.length][];
+        int size = HEADER_BYTES + (code.length + constants.length) * Integer.BYTES;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = slotNames[i].getBytes(StandardCharsets.UTF_8);
+            size += Short.BYTES + names[i].length;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(MAGIC).putInt(VERSION)
+                .putInt(code.length).putInt(constants.length).putInt(slotNames.length);
+        buf.asIntBuffer().put(code).put(constants);
+        buf.position(buf.position() + (code.length + constants.length) * Integer.BYTES);
+        for (byte[] name : names) {
+            buf.putShort((short) name.length).put(name);
+        }
+        return buf.flip();
+    }
+
+    public void write(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = toByteBuffer();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+    }
+
+    /**
+     * Loads a serialized module by memory-mapping the file, so the code and
+     * constant sections are bulk-copied straight out of the page cache.
+     */
+    public static BytecodeModule read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(mapped);
+        }
+    }
+
+    public static BytecodeModule read(ByteBuffer buf) {
+        if (buf.remaining() < HEADER_BYTES || buf.getInt() != MAGIC) {
+            throw new VmError("Not a TinyLang bytecode module.");
+        }
+        int version = buf.getInt();
+        if (version != VERSION) {
+            throw new VmError("Unsupported bytecode version " + version + ", expected " + VERSION + ".");
+        }
+        int codeLength = buf.getInt();
+        int constantCount = buf.getInt();
+        int slotCount = buf.getInt();
+        if (codeLength <= 0 || constantCount < 0 || slotCount < 0
+                || ((long) codeLength + constantCount) * Integer.BYTES > buf.remaining()) {
+            throw new VmError("Truncated bytecode module.");
+        }
+
+        int[] code = new int[codeLength];
+        int[] constants = new int[constantCount];
+        buf.asIntBuffer().get(code).get(constants);
+        buf.position(buf.position() + (codeLength + constantCount) * Integer.BYTES);
+
+        // Each name takes at least its two-byte length
+        if (slotCount > buf.remaining() / Short.BYTES) {
+            throw new VmError("Truncated bytecode module.");
+        }
+        String[] slotNames = new String[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            if (buf.remaining() < Short.BYTES) {
+                throw new VmError("Truncated bytecode module.");
+            }
+            int length = buf.getShort() & 0xFFFF;
+            if (length > buf.remaining()) {
+                throw new VmError("Truncated bytecode module.");
+            }
+            byte[] name = new byte[length];
+            buf.get(name);
+            slotNames[i] = new String(name, StandardCharsets.UTF_8);
+        }
+        return new BytecodeModule(code, constants, slotNames);
+    }
+}
@@ -0,0 +1,136 @@
+package vm;
+
+/**
+ * Integer opcodes for the stack ISA produced by {@link target.TargetCodeGeneration}.
+ *
+ * Plain int constants (rather than an enum) so the interpreter's dispatch
+ * switch compiles down to a tableswitch on the raw code array.
+ *
+ * Opcodes from {@link #FIRST_SUPERINSTRUCTION} on are superinstructions:
+ * each does the work of a fixed {@link #sequence} of the ones before it in
+ * a single dispatch, and its operand words are theirs, in order. They only
+ * exist in bytecode; the {@link Assembler} picks them, and assembly text
+ * never names them. The set was chosen with
+ * {@code bench.SuperinstructionProfiler} as the sequences that save the most
+ * dispatches, statically, over a corpus of generated programs.
+ */
+public final class Opcode {
+    public static final int LOAD   = 0;  // LOAD <slot>
+    public static final int PUSH   = 1;  // PUSH <const>
+    public static final int STORE  = 2;  // STORE <slot>
+    public static final int ADD    = 3;
+    public static final int SUB    = 4;
+    public static final int CMP_LT = 5;
+    public static final int JMP    = 6;  // JMP <pc>
+    public static final int JZ     = 7;  // JZ <pc>
+    public static final int JNZ    = 8;  // JNZ <pc>
+    public static final int PRINT  = 9;
+    public static final int READ   = 10; // READ <slot>
+    public static final int HALT   = 11;
+
+    public static final int LOAD_PUSH_ADD_STORE = 12; // <slot> <const> <slot>
+    public static final int LOAD_PUSH_CMP_LT    = 13; // <slot> <const>
+    public static final int PUSH_SUB_STORE      = 14; // <const> <slot>
+    public static final int LOAD_LOAD_CMP_LT_JZ = 15; // <slot> <slot> <pc>
+    public static final int LOAD_LOAD_ADD       = 16; // <slot> <slot>
+    public static final int LOAD_STORE          = 17; // <slot> <slot>
+
+    public static final int FIRST_SUPERINSTRUCTION = LOAD_PUSH_ADD_STORE;
+
+    /** One past the largest opcode. */
+    public static final int COUNT = 18;
+
+    private static final String[] NAMES = {
+            "LOAD", "PUSH", "STORE", "ADD", "SUB", "CMP_LT",
+            "JMP", "JZ", "JNZ", "PRINT", "READ", "HALT",
+            "LOAD_PUSH_ADD_STORE", "LOAD_PUSH_CMP_LT", "PUSH_SUB_STORE",
+            "LOAD_LOAD_CMP_LT_JZ", "LOAD_LOAD_ADD", "LOAD_STORE"
+    };
+
+    private static final int[][] SEQUENCES = {
+            {LOAD, PUSH, ADD, STORE},
+            {LOAD, PUSH, CMP_LT},
+            {PUSH, SUB, STORE},
+            {LOAD, LOAD, CMP_LT, JZ},
+            {LOAD, LOAD, ADD},
+            {LOAD, STORE}
+    };
+
+    private Opcode() {
+    }
+
+    /**
+     * Looks up the opcode for an assembly mnemonic, or -1 if there is none.
+     * Superinstructions have no mnemonic in assembly text.
+     */
+    public static int fromMnemonic(String mnemonic) {
+        for (int i = 0; i < FIRST_SUPERINSTRUCTION; i++) {
+            if (NAMES[i].equals(mnemonic)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static String mnemonic(int opcode) {
+        return (opcode >= 0 && opcode < NAMES.length) ? NAMES[opcode] : "?" + opcode;
+    }
+
+    public static boolean isSuperinstruction(int opcode) {
+        return opcode >= FIRST_SUPERINSTRUCTION && opcode < COUNT;
+    }
+
+    /**
+     * The plain instructions {@code opcode} stands for: just itself unless
+     * it is a superinstruction.
+     */
+    public static int[] sequence(int opcode) {
+        return isSuperinstruction(opcode) ? SEQUENCES[opcode - FIRST_SUPERINSTRUCTION].clone() : new int[] {opcode};
+    }
+
+    /**
+     * Number of operand words that follow the opcode in the code array.
+     */
+    public static int operandCount(int opcode) {
+        if (!isSuperinstruction(opcode)) {
+            return hasOperand(opcode) ? 1 : 0;
+        }
+        int count = 0;
+        for (int op : SEQUENCES[opcode - FIRST_SUPERINSTRUCTION]) {
+            if (hasOperand(op)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * True if the opcode is followed by at least one operand word in the code array.
+     */
+    public static boolean hasOperand(int opcode) {
+        switch (opcode) {
+            case LOAD: case PUSH: case STORE:
+            case JMP: case JZ: case JNZ:
+            case READ:
+                return true;
+            default:
+                return isSuperinstruction(opcode);
+        }
+    }
+
+    /**
+     * Net effect of the opcode on the operand stack depth.
+     */
+    public static int stackEffect(int opcode) {
+        switch (opcode) {
+            case LOAD: case PUSH:
+                return 1;
+            case STORE: case ADD: case SUB: case CMP_LT:
+            case JZ: case JNZ: case PRINT:
+                return -1;
+            default:
+                if (!isSuperinstruction(opcode)) return 0;
+                int effect = 0;
+                for (int op : SEQUENCES[opcode - FIRST_SUPERINSTRUCTION]) effect += stackEffect(op);
+                return effect;
+        }
+    }
+}
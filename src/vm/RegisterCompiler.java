@@ -0,0 +1,171 @@
+package vm;
+
+import icg.Quadruple;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lowers (optimized) TAC quadruples to {@link RegisterProgram} bytecode.
+ *
+ * Every variable and temp gets its own frame slot, and every distinct
+ * constant gets a read-only slot after them, so a quad like
+ * (+, x, 1, t0) becomes the single instruction ADD t0, x, #1.
+ * Labels are resolved to absolute code offsets in a first pass.
+ */
+public class RegisterCompiler {
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final List<String> slotNames = new ArrayList<>();
+    private final Map<Integer, Integer> constantIndex = new HashMap<>();
+    private final List<Integer> constants = new ArrayList<>();
+
+    public RegisterProgram compile(List<Quadruple> quads) {
+        slots.clear();
+        slotNames.clear();
+        constantIndex.clear();
+        constants.clear();
+
+        // Pass 1: find the code offset every label refers to
+        Map<String, Integer> labels = new HashMap<>();
+        int pc = 0;
+        for (Quadruple q : quads) {
+            if (q.op().equals("LABEL")) {
+                if (labels.put(q.arg1(), pc) != null) {
+                    throw new VmError("Duplicate label: " + q.arg1());
+                }
+            } else {
+                pc += 1 + RegisterOpcode.operandCount(opcodeFor(q));
+            }
+        }
+
+        // Pass 2: encode. Constant operands are written as -(index + 1)
+        // and patched once we know how many variable slots there are.
+        int[] code = new int[pc + 1];
+        pc = 0;
+        for (Quadruple q : quads) {
+            String op = q.op();
+            if (op.equals("LABEL")) continue;
+            int opcode = opcodeFor(q);
+            code[pc++] = opcode;
+            switch (opcode) {
+                case RegisterOpcode.MOVE:
+                    code[pc++] = variable(q.result());
+                    code[pc++] = operand(q.arg1());
+                    break;
+                case RegisterOpcode.ADD:
+                case RegisterOpcode.SUB:
+                case RegisterOpcode.LT:
+                    code[pc++] = variable(q.result());
+                    code[pc++] = operand(q.arg1());
+                    code[pc++] = operand(q.arg2());
+                    break;
+                case RegisterOpcode.JMP:
+                    code[pc++] = label(labels, q.arg1());
+                    break;
+                case RegisterOpcode.JZ:
+                case RegisterOpcode.JNZ:
+                    code[pc++] = operand(q.arg1());
+                    code[pc++] = label(labels, q.arg2());
+                    break;
+                case RegisterOpcode.PRINT:
+                    code[pc++] = operand(q.result() != null ? q.result() : q.arg1());
+                    break;
+                case RegisterOpcode.READ:
+                    code[pc++] = variable(q.result() != null ? q.result() : q.arg1());
+                    break;
+                default:
+                    break;
+            }
+        }
+        code[pc] = RegisterOpcode.HALT;
+
+        int variableCount = slotNames.size();
+        for (int i = 0; i < pc; i += 1 + RegisterOpcode.operandCount(code[i])) {
+            for (int j = 1; j <= RegisterOpcode.operandCount(code[i]); j++) {
+                if (code[i + j] < 0) {
+                    code[i + j] = variableCount - code[i + j] - 1;
+                }
+            }
+        }
+
+        int[] frameTemplate = new int[variableCount + constants.size()];
+        String[] names = new String[frameTemplate.length];
+        for (int i = 0; i < variableCount; i++) {
+            names[i] = slotNames.get(i);
+        }
+        for (int i = 0; i < constants.size(); i++) {
+            frameTemplate[variableCount + i] = constants.get(i);
+            names[variableCount + i] = String.valueOf(constants.get(i));
+        }
+        return new RegisterProgram(code, frameTemplate, names, variableCount);
+    }
+
+    private int opcodeFor(Quadruple q) {
+        switch (q.op()) {
+            case "=": return RegisterOpcode.MOVE;
+            case "+": return RegisterOpcode.ADD;
+            case "-": return RegisterOpcode.SUB;
+            case "<": return RegisterOpcode.LT;
+            case "GOTO": return RegisterOpcode.JMP;
+            case "IFZ": return RegisterOpcode.JZ;
+            case "IFNZ": return RegisterOpcode.JNZ;
+            case "PRINT": return RegisterOpcode.PRINT;
+            case "READ": return RegisterOpcode.READ;
+            default:
+                throw new VmError("Unsupported quadruple: " + q);
+        }
+    }
+
+    /**
+     * Slot for a name that is written to; constants are not allowed here.
+     */
+    private int variable(String name) {
+        if (name == null || isIntegerLiteral(name)) {
+            throw new VmError("Expected a variable but found '" + name + "'.");
+        }
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            slot = slotNames.size();
+            slots.put(name, slot);
+            slotNames.add(name);
+        }
+        return slot;
+    }
+
+    private int operand(String name) {
+        if (name == null) {
+            throw new VmError("Missing operand.");
+        }
+        if (!isIntegerLiteral(name)) {
+            return variable(name);
+        }
+        int value = Integer.parseInt(name);
+        Integer index = constantIndex.get(value);
+        if (index == null) {
+            index = constants.size();
+            constantIndex.put(value, index);
+            constants.add(value);
+        }
+        return -index - 1;
+    }
+
+    private static int label(Map<String, Integer> labels, String name) {
+        Integer target = labels.get(name);
+        if (target == null) {
+            throw new VmError("Undefined label: " + name);
+        }
+        return target;
+    }
+
+    private static boolean isIntegerLiteral(String s) {
+        int i = (s.startsWith("-") && s.length() > 1) ? 1 : 0;
+        if (i == s.length()) return false;
+        for (; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,43 @@
+package vm;
+
+/**
+ * Opcodes of the register machine run by {@link RegisterVM}.
+ *
+ * Every operand is a frame slot index except jump targets, which are
+ * absolute code offsets. Constants live in pre-initialised frame slots,
+ * so there are no separate immediate forms.
+ */
+public final class RegisterOpcode {
+    public static final int MOVE   = 0;  // MOVE dst, src
+    public static final int ADD    = 1;  // ADD dst, a, b
+    public static final int SUB    = 2;  // SUB dst, a, b
+    public static final int LT     = 3;  // LT dst, a, b      dst = (a < b) ? 1 : 0
+    public static final int JMP    = 4;  // JMP pc
+    public static final int JZ     = 5;  // JZ cond, pc
+    public static final int JNZ    = 6;  // JNZ cond, pc
+    public static final int PRINT  = 7;  // PRINT src
+    public static final int READ   = 8;  // READ dst
+    public static final int HALT   = 9;
+
+    private static final String[] NAMES = {
+            "MOVE", "ADD", "SUB", "LT", "JMP", "JZ", "JNZ", "PRINT", "READ", "HALT"
+    };
+
+    private static final int[] OPERANDS = {
+            2, 3, 3, 3, 1, 2, 2, 1, 1, 0
+    };
+
+    private RegisterOpcode() {
+    }
+
+    public static String mnemonic(int opcode) {
+        return (opcode >= 0 && opcode < NAMES.length) ? NAMES[opcode] : "?" + opcode;
+    }
+
+    /**
+     * Number of operand words that follow the opcode in the code array.
+     */
+    public static int operandCount(int opcode) {
+        return OPERANDS[opcode];
+    }
+}
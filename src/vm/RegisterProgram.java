@@ -0,0 +1,58 @@
+package vm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Register bytecode for {@link RegisterVM}: the code array plus the frame
+ * layout. Slots [0, variableCount) hold variables and temps and start at
+ * zero; the remaining slots hold the constant pool and are filled in from
+ * {@link #frameTemplate} when a frame is created.
+ */
+public final class RegisterProgram {
+
+    final int[] code;
+    final int[] frameTemplate;
+    final String[] slotNames;
+    final int variableCount;
+
+    RegisterProgram(int[] code, int[] frameTemplate, String[] slotNames, int variableCount) {
+        this.code = code;
+        this.frameTemplate = frameTemplate;
+        this.slotNames = slotNames;
+        this.variableCount = variableCount;
+    }
+
+    public int codeLength() {
+        return code.length;
+    }
+
+    public int frameSize() {
+        return frameTemplate.length;
+    }
+
+    public List<String> disassemble() {
+        List<String> lines = new ArrayList<>();
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc];
+            StringBuilder line = new StringBuilder().append(pc).append(": ").append(RegisterOpcode.mnemonic(op));
+            int operands = RegisterOpcode.operandCount(op);
+            boolean jump = op == RegisterOpcode.JMP || op == RegisterOpcode.JZ || op == RegisterOpcode.JNZ;
+            for (int i = 1; i <= operands; i++) {
+                int arg = code[pc + i];
+                line.append(i == 1 ? " " : ", ");
+                if (jump && i == operands) {
+                    line.append('@').append(arg);
+                } else if (arg >= variableCount) {
+                    line.append('#').append(frameTemplate[arg]);
+                } else {
+                    line.append(slotNames[arg]);
+                }
+            }
+            lines.add(line.toString());
+            pc += 1 + operands;
+        }
+        return lines;
+    }
+}
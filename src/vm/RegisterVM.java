@@ -0,0 +1,81 @@
+package vm;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Executes {@link RegisterProgram} bytecode. Each TAC quad is one dispatch,
+ * operating directly on frame slots with no operand stack in between.
+ */
+public class RegisterVM {
+
+    private final int[] code;
+    private final int[] frameTemplate;
+    private long executed;
+
+    public RegisterVM(RegisterProgram program) {
+        this.code = program.code;
+        this.frameTemplate = program.frameTemplate;
+    }
+
+    /**
+     * Runs the program to completion. Variables and temps start at zero.
+     */
+    public void run(IntSupplier input, IntConsumer output) {
+        final int[] code = this.code;
+        final int[] f = frameTemplate.clone();
+        int pc = 0;
+        long count = 0;
+
+        while (true) {
+            count++;
+            switch (code[pc]) {
+                case RegisterOpcode.MOVE:
+                    f[code[pc + 1]] = f[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case RegisterOpcode.ADD:
+                    f[code[pc + 1]] = f[code[pc + 2]] + f[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case RegisterOpcode.SUB:
+                    f[code[pc + 1]] = f[code[pc + 2]] - f[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case RegisterOpcode.LT:
+                    f[code[pc + 1]] = (f[code[pc + 2]] < f[code[pc + 3]]) ? 1 : 0;
+                    pc += 4;
+                    break;
+                case RegisterOpcode.JMP:
+                    pc = code[pc + 1];
+                    break;
+                case RegisterOpcode.JZ:
+                    pc = (f[code[pc + 1]] == 0) ? code[pc + 2] : pc + 3;
+                    break;
+                case RegisterOpcode.JNZ:
+                    pc = (f[code[pc + 1]] != 0) ? code[pc + 2] : pc + 3;
+                    break;
+                case RegisterOpcode.PRINT:
+                    output.accept(f[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case RegisterOpcode.READ:
+                    f[code[pc + 1]] = input.getAsInt();
+                    pc += 2;
+                    break;
+                case RegisterOpcode.HALT:
+                    executed = count;
+                    return;
+                default:
+                    throw new VmError("Bad opcode " + code[pc] + " at " + pc);
+            }
+        }
+    }
+
+    /**
+     * Number of instructions dispatched by the last {@link #run}, including the final HALT.
+     */
+    public long getExecutedCount() {
+        return executed;
+    }
+}
@@ -0,0 +1,243 @@
+package vm;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Executes the stack assembly produced by {@link target.TargetCodeGeneration}.
+ *
+ * Programs are run from an assembled {@link BytecodeModule}, so all text
+ * handling happens up front in the {@link Assembler} (or not at all when
+ * the module is read back from disk). {@link #run} then only touches
+ * the int code array, the frame and a fixed-size operand stack.
+ *
+ * The top of the operand stack is cached in a local variable, so an
+ * instruction like ADD reads the array once instead of twice and writes
+ * it not at all. Superinstructions (see {@link Opcode}) do the work of
+ * several instructions per dispatch, mostly without touching the stack.
+ */
+public class StackVM {
+
+    private final int[] code;
+    private final int[] constants;
+    private final String[] slotNames;
+    private final int maxStack;
+    private long executed;
+
+    public StackVM(List<String> assembly) {
+        this(new Assembler().assemble(assembly));
+    }
+
+    public StackVM(BytecodeModule module) {
+        this.code = module.code;
+        this.constants = module.constants;
+        this.slotNames = module.slotNames;
+        this.maxStack = verify(code, constants.length, slotNames.length);
+    }
+
+    /**
+     * Runs the program to completion with a zero-initialised frame.
+     */
+    public void run(IntSupplier input, IntConsumer output) {
+        final int[] code = this.code;
+        final int[] frame = new int[slotNames.length];
+        final int[] stack = new int[maxStack];
+        // The top of the operand stack is kept in tos and the rest in
+        // stack[1..sp-1]; stack[0] takes whatever tos held when the stack
+        // was empty.
+        int tos = 0;
+        int sp = 0;
+        int pc = 0;
+        long count = 0;
+
+        while (true) {
+            count++;
+            switch (code[pc]) {
+                case Opcode.LOAD:
+                    stack[sp++] = tos;
+                    tos = frame[code[pc + 1]];
+                    pc += 2;
+                    break;
+                case Opcode.PUSH:
+                    stack[sp++] = tos;
+                    tos = constants[code[pc + 1]];
+                    pc += 2;
+                    break;
+                case Opcode.STORE:
+                    frame[code[pc + 1]] = tos;
+                    tos = stack[--sp];
+                    pc += 2;
+                    break;
+                case Opcode.ADD:
+                    tos = stack[--sp] + tos;
+                    pc++;
+                    break;
+                case Opcode.SUB:
+                    tos = stack[--sp] - tos;
+                    pc++;
+                    break;
+                case Opcode.CMP_LT:
+                    tos = (stack[--sp] < tos) ? 1 : 0;
+                    pc++;
+                    break;
+                case Opcode.JMP:
+                    pc = code[pc + 1];
+                    break;
+                case Opcode.JZ: {
+                    int value = tos;
+                    tos = stack[--sp];
+                    pc = (value == 0) ? code[pc + 1] : pc + 2;
+                    break;
+                }
+                case Opcode.JNZ: {
+                    int value = tos;
+                    tos = stack[--sp];
+                    pc = (value != 0) ? code[pc + 1] : pc + 2;
+                    break;
+                }
+                case Opcode.PRINT:
+                    output.accept(tos);
+                    tos = stack[--sp];
+                    pc++;
+                    break;
+                case Opcode.READ:
+                    frame[code[pc + 1]] = input.getAsInt();
+                    pc += 2;
+                    break;
+                case Opcode.HALT:
+                    executed = count;
+                    return;
+                case Opcode.LOAD_PUSH_ADD_STORE:
+                    frame[code[pc + 3]] = frame[code[pc + 1]] + constants[code[pc + 2]];
+                    pc += 4;
+                    break;
+                case Opcode.LOAD_PUSH_CMP_LT:
+                    stack[sp++] = tos;
+                    tos = (frame[code[pc + 1]] < constants[code[pc + 2]]) ? 1 : 0;
+                    pc += 3;
+                    break;
+                case Opcode.PUSH_SUB_STORE:
+                    frame[code[pc + 2]] = tos - constants[code[pc + 1]];
+                    tos = stack[--sp];
+                    pc += 3;
+                    break;
+                case Opcode.LOAD_LOAD_CMP_LT_JZ:
+                    pc = (frame[code[pc + 1]] < frame[code[pc + 2]]) ? pc + 4 : code[pc + 3];
+                    break;
+                case Opcode.LOAD_LOAD_ADD:
+                    stack[sp++] = tos;
+                    tos = frame[code[pc + 1]] + frame[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case Opcode.LOAD_STORE:
+                    frame[code[pc + 2]] = frame[code[pc + 1]];
+                    pc += 3;
+                    break;
+                default:
+                    throw new VmError("Bad opcode " + code[pc] + " at " + pc);
+            }
+        }
+    }
+
+    /**
+     * Number of instructions dispatched by the last {@link #run}, including the final HALT.
+     */
+    public long getExecutedCount() {
+        return executed;
+    }
+
+    public int getCodeSize() {
+        return code.length;
+    }
+
+    public String[] getSlotNames() {
+        return slotNames.clone();
+    }
+
+    /**
+     * Follows every control-flow path once to find the deepest the operand
+     * stack can get. Also rejects code whose operands are out of range, whose
+     * depth differs between paths meeting at a label or that pops an empty
+     * stack, so modules read from disk cannot make {@link #run} misbehave.
+     */
+    private static int verify(int[] code, int constantCount, int slotCount) {
+        if (code.length == 0 || code[code.length - 1] != Opcode.HALT) {
+            throw new VmError("Code must end with HALT.");
+        }
+        int[] depthAt = new int[code.length];
+        Arrays.fill(depthAt, -1);
+        Deque<Integer> work = new ArrayDeque<>();
+        depthAt[0] = 0;
+        work.push(0);
+        int max = 0;
+
+        while (!work.isEmpty()) {
+            int pc = work.pop();
+            int depth = depthAt[pc];
+            int op = code[pc];
+            if (op == Opcode.HALT) continue;
+            if (op < 0 || op >= Opcode.COUNT) {
+                throw new VmError("Bad opcode " + op + " at " + pc);
+            }
+
+            int next = pc + 1 + Opcode.operandCount(op);
+            if (next >= code.length) {
+                throw new VmError("Truncated instruction at " + pc);
+            }
+            // A superinstruction is checked as the instructions it stands for
+            int[] sequence = Opcode.sequence(op);
+            int operand = pc + 1;
+            int target = -1;
+            for (int k = 0; k < sequence.length; k++) {
+                int component = sequence[k];
+                int arg = Opcode.hasOperand(component) ? code[operand++] : 0;
+                int limit = switch (component) {
+                    case Opcode.LOAD, Opcode.STORE, Opcode.READ -> slotCount;
+                    case Opcode.PUSH -> constantCount;
+                    case Opcode.JMP, Opcode.JZ, Opcode.JNZ -> code.length;
+                    default -> Integer.MAX_VALUE;
+                };
+                if (arg < 0 || arg >= limit) {
+                    throw new VmError("Operand out of range at " + pc + " (" + Opcode.mnemonic(op) + " " + arg + ")");
+                }
+
+                int pops = (component == Opcode.STORE || component == Opcode.JZ || component == Opcode.JNZ
+                        || component == Opcode.PRINT) ? 1
+                        : (component == Opcode.ADD || component == Opcode.SUB || component == Opcode.CMP_LT) ? 2 : 0;
+                if (depth < pops) {
+                    throw new VmError("Stack underflow at " + pc + " (" + Opcode.mnemonic(op) + ")");
+                }
+                depth += Opcode.stackEffect(component);
+                max = Math.max(max, depth);
+                if (isJump(component)) target = arg;
+                op = component;
+            }
+
+            // op is now the last instruction of the sequence
+            if (op != Opcode.JMP) {
+                flow(depthAt, work, next, depth);
+            }
+            if (target >= 0) {
+                flow(depthAt, work, target, depth);
+            }
+        }
+        return max;
+    }
+
+    private static boolean isJump(int op) {
+        return op == Opcode.JMP || op == Opcode.JZ || op == Opcode.JNZ;
+    }
+
+    private static void flow(int[] depthAt, Deque<Integer> work, int pc, int depth) {
+        if (depthAt[pc] == -1) {
+            depthAt[pc] = depth;
+            work.push(pc);
+        } else if (depthAt[pc] != depth) {
+            throw new VmError("Inconsistent stack depth at " + pc);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package vm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Default console bindings for PRINT and READ.
+ */
+public final class StdIO {
+
+    private StdIO() {
+    }
+
+    /**
+     * Reads one integer per line from standard input.
+     * Blank lines are skipped and end of input reads as 0.
+     */
+    public static IntSupplier stdin() {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+        return () -> {
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty()) {
+                        return Integer.parseInt(line);
+                    }
+                }
+                return 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (NumberFormatException e) {
+                throw new VmError("READ expected an integer: " + e.getMessage());
+            }
+        };
+    }
+
+    public static IntConsumer stdout() {
+        return System.out::println;
+    }
+}
@@ -0,0 +1,265 @@
+package vm;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * A {@link RegisterVM} with a tracing JIT for hot loops.
+ *
+ * The interpreter counts backward jumps per target (loop header). When a
+ * header reaches the hot threshold, one iteration of the loop is executed
+ * by a recording interpreter that notes every pc and branch direction.
+ * {@link TraceCompiler} turns that trace into a hidden class, and from then
+ * on taking the back-edge enters the compiled loop, which only returns to
+ * the interpreter through a failed guard. Traces that would cover an inner
+ * loop, halt, or grow past {@link #MAX_TRACE_LENGTH} are abandoned and the
+ * header is not tried again.
+ */
+public class TieredVM {
+
+    public static final int DEFAULT_HOT_THRESHOLD = 100;
+    public static final int MAX_TRACE_LENGTH = 1000;
+
+    private static final int BLACKLISTED = -1;
+
+    private final RegisterProgram program;
+    private final int[] code;
+    private final int hotThreshold;
+    private final int[] backEdgeCounts;
+    private final MethodHandle[] traces;
+    private int compiledTraces;
+    private long interpreted;
+
+    public TieredVM(RegisterProgram program) {
+        this(program, DEFAULT_HOT_THRESHOLD);
+    }
+
+    public TieredVM(RegisterProgram program, int hotThreshold) {
+        this.program = program;
+        this.code = program.code;
+        this.hotThreshold = hotThreshold;
+        this.backEdgeCounts = new int[code.length];
+        this.traces = new MethodHandle[code.length];
+    }
+
+    /**
+     * Runs the program to completion. Variables and temps start at zero.
+     * Compiled traces are kept for later runs.
+     */
+    public void run(IntSupplier input, IntConsumer output) {
+        final int[] code = this.code;
+        final int[] f = program.frameTemplate.clone();
+        int pc = 0;
+        long count = 0;
+
+        while (true) {
+            count++;
+            switch (code[pc]) {
+                case RegisterOpcode.MOVE:
+                    f[code[pc + 1]] = f[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case RegisterOpcode.ADD:
+                    f[code[pc + 1]] = f[code[pc + 2]] + f[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case RegisterOpcode.SUB:
+                    f[code[pc + 1]] = f[code[pc + 2]] - f[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case RegisterOpcode.LT:
+                    f[code[pc + 1]] = (f[code[pc + 2]] < f[code[pc + 3]]) ? 1 : 0;
+                    pc += 4;
+                    break;
+                case RegisterOpcode.JMP: {
+                    int target = code[pc + 1];
+                    pc = (target <= pc) ? backEdge(target, f, input, output) : target;
+                    break;
+                }
+                case RegisterOpcode.JZ: {
+                    int target = code[pc + 2];
+                    if (f[code[pc + 1]] != 0) {
+                        pc += 3;
+                    } else {
+                        pc = (target <= pc) ? backEdge(target, f, input, output) : target;
+                    }
+                    break;
+                }
+                case RegisterOpcode.JNZ: {
+                    int target = code[pc + 2];
+                    if (f[code[pc + 1]] == 0) {
+                        pc += 3;
+                    } else {
+                        pc = (target <= pc) ? backEdge(target, f, input, output) : target;
+                    }
+                    break;
+                }
+                case RegisterOpcode.PRINT:
+                    output.accept(f[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case RegisterOpcode.READ:
+                    f[code[pc + 1]] = input.getAsInt();
+                    pc += 2;
+                    break;
+                case RegisterOpcode.HALT:
+                    interpreted = count;
+                    return;
+                default:
+                    throw new VmError("Bad opcode " + code[pc] + " at " + pc);
+            }
+        }
+    }
+
+    /**
+     * Instructions dispatched by the interpreter in the last {@link #run};
+     * work done inside compiled traces is not counted.
+     */
+    public long getInterpretedCount() {
+        return interpreted;
+    }
+
+    public int getCompiledTraceCount() {
+        return compiledTraces;
+    }
+
+    /**
+     * Called on every jump to {@code header} from at or after it.
+     * Returns the pc to continue interpreting at.
+     */
+    private int backEdge(int header, int[] f, IntSupplier input, IntConsumer output) {
+        MethodHandle trace = traces[header];
+        if (trace != null) {
+            return enter(trace, f, input, output);
+        }
+        int n = backEdgeCounts[header];
+        if (n == BLACKLISTED) {
+            return header;
+        }
+        if (++n < hotThreshold) {
+            backEdgeCounts[header] = n;
+            return header;
+        }
+
+        Recording recording = new Recording();
+        int next = record(header, f, input, output, recording);
+        if (next != header) {
+            backEdgeCounts[header] = BLACKLISTED;
+            return next;
+        }
+        try {
+            trace = new TraceCompiler(program).compile(recording.pcs(), recording.taken());
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not worth failing the program over; keep interpreting this loop
+            backEdgeCounts[header] = BLACKLISTED;
+            return header;
+        }
+        traces[header] = trace;
+        compiledTraces++;
+        return enter(trace, f, input, output);
+    }
+
+    private static int enter(MethodHandle trace, int[] f, IntSupplier input, IntConsumer output) {
+        try {
+            return (int) trace.invokeExact(f, input, output);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new VmError("Compiled trace failed: " + t);
+        }
+    }
+
+    /**
+     * Executes one loop iteration starting at {@code header}, recording it.
+     * Returns {@code header} if the iteration came back around to it and the
+     * trace is usable, otherwise the pc where recording stopped.
+     */
+    private int record(int header, int[] f, IntSupplier input, IntConsumer output, Recording recording) {
+        BitSet seen = new BitSet(code.length);
+        int pc = header;
+        do {
+            if (seen.get(pc) || recording.length == MAX_TRACE_LENGTH) {
+                // An inner loop, or just too long to be worth compiling
+                return pc;
+            }
+            seen.set(pc);
+            recording.add(pc);
+            switch (code[pc]) {
+                case RegisterOpcode.MOVE:
+                    f[code[pc + 1]] = f[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case RegisterOpcode.ADD:
+                    f[code[pc + 1]] = f[code[pc + 2]] + f[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case RegisterOpcode.SUB:
+                    f[code[pc + 1]] = f[code[pc + 2]] - f[code[pc + 3]];
+                    pc += 4;
+                    break;
+                case RegisterOpcode.LT:
+                    f[code[pc + 1]] = (f[code[pc + 2]] < f[code[pc + 3]]) ? 1 : 0;
+                    pc += 4;
+                    break;
+                case RegisterOpcode.JMP:
+                    pc = code[pc + 1];
+                    break;
+                case RegisterOpcode.JZ: {
+                    boolean jump = f[code[pc + 1]] == 0;
+                    recording.branch(jump);
+                    pc = jump ? code[pc + 2] : pc + 3;
+                    break;
+                }
+                case RegisterOpcode.JNZ: {
+                    boolean jump = f[code[pc + 1]] != 0;
+                    recording.branch(jump);
+                    pc = jump ? code[pc + 2] : pc + 3;
+                    break;
+                }
+                case RegisterOpcode.PRINT:
+                    output.accept(f[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case RegisterOpcode.READ:
+                    f[code[pc + 1]] = input.getAsInt();
+                    pc += 2;
+                    break;
+                default:
+                    // HALT (or garbage): the loop exited while recording
+                    return pc;
+            }
+        } while (pc != header);
+        return header;
+    }
+
+    /**
+     * The pcs and branch directions seen while recording one iteration.
+     */
+    private static final class Recording {
+        private int[] pcs = new int[16];
+        private boolean[] taken = new boolean[16];
+        private int length;
+        private int branches;
+
+        void add(int pc) {
+            if (length == pcs.length) pcs = Arrays.copyOf(pcs, length * 2);
+            pcs[length++] = pc;
+        }
+
+        void branch(boolean jumped) {
+            if (branches == taken.length) taken = Arrays.copyOf(taken, branches * 2);
+            taken[branches++] = jumped;
+        }
+
+        int[] pcs() {
+            return Arrays.copyOf(pcs, length);
+        }
+
+        boolean[] taken() {
+            return Arrays.copyOf(taken, branches);
+        }
+    }
+}
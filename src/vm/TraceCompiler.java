@@ -0,0 +1,199 @@
+package vm;
+
+import jvm.Bytecode;
+import jvm.ClassFileWriter;
+import jvm.MethodCode;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Compiles a recorded loop trace into a hidden class with one method:
+ * <pre>
+ * static int run(int[] frame, IntSupplier in, IntConsumer out)
+ * </pre>
+ * The frame slots the trace touches are loaded into int locals, the
+ * straight-line trace body loops back on itself, and every conditional
+ * jump recorded in the trace becomes a guard. When a guard fails the
+ * locals are written back to the frame and the method returns the pc
+ * at which the interpreter should resume.
+ */
+final class TraceCompiler {
+
+    static final MethodType TRACE_TYPE =
+            MethodType.methodType(int.class, int[].class, IntSupplier.class, IntConsumer.class);
+
+    private static final String SUPPLIER = "java/util/function/IntSupplier";
+    private static final String CONSUMER = "java/util/function/IntConsumer";
+    private static final int FRAME = 0;
+    private static final int INPUT = 1;
+    private static final int OUTPUT = 2;
+    private static final int FIRST_SLOT_LOCAL = 3;
+
+    private final RegisterProgram program;
+
+    TraceCompiler(RegisterProgram program) {
+        this.program = program;
+    }
+
+    /**
+     * @param pcs   the pc of every instruction executed in one loop iteration, header first
+     * @param taken for each conditional jump in {@code pcs}, whether it jumped during recording
+     */
+    MethodHandle compile(int[] pcs, boolean[] taken) throws ReflectiveOperationException {
+        int[] code = program.code;
+
+        // Give each variable slot used by the trace an int local
+        int[] localOf = new int[program.variableCount];
+        Arrays.fill(localOf, -1);
+        int locals = FIRST_SLOT_LOCAL;
+        for (int pc : pcs) {
+            int op = code[pc];
+            int operands = RegisterOpcode.operandCount(op);
+            int slotOperands = (op == RegisterOpcode.JMP) ? 0
+                    : (op == RegisterOpcode.JZ || op == RegisterOpcode.JNZ) ? 1 : operands;
+            for (int i = 1; i <= slotOperands; i++) {
+                int slot = code[pc + i];
+                if (slot < program.variableCount && localOf[slot] < 0) {
+                    localOf[slot] = locals++;
+                }
+            }
+        }
+        int exitPc = locals++;
+
+        String[] types = new String[locals];
+        types[FRAME] = "[I";
+        types[INPUT] = SUPPLIER;
+        types[OUTPUT] = CONSUMER;
+        Arrays.fill(types, FIRST_SLOT_LOCAL, locals, "I");
+
+        ClassFileWriter writer = new ClassFileWriter("vm/Trace");
+        MethodCode m = writer.newCode(types);
+
+        // Prologue: frame -> locals
+        for (int slot = 0; slot < localOf.length; slot++) {
+            if (localOf[slot] >= 0) {
+                m.aload(FRAME);
+                m.iconst(slot);
+                m.iaload();
+                m.istore(localOf[slot]);
+            }
+        }
+        m.iconst(0);
+        m.istore(exitPc);
+
+        MethodCode.Label top = m.newLabel();
+        MethodCode.Label writeBack = m.newLabel();
+        MethodCode.Label[] exits = new MethodCode.Label[pcs.length];
+        int[] exitTargets = new int[pcs.length];
+        m.mark(top);
+
+        int guard = 0;
+        for (int i = 0; i < pcs.length; i++) {
+            int pc = pcs[i];
+            switch (code[pc]) {
+                case RegisterOpcode.MOVE:
+                    load(m, localOf, code[pc + 2]);
+                    m.istore(localOf[code[pc + 1]]);
+                    break;
+                case RegisterOpcode.ADD:
+                    load(m, localOf, code[pc + 2]);
+                    load(m, localOf, code[pc + 3]);
+                    m.iadd();
+                    m.istore(localOf[code[pc + 1]]);
+                    break;
+                case RegisterOpcode.SUB:
+                    load(m, localOf, code[pc + 2]);
+                    load(m, localOf, code[pc + 3]);
+                    m.isub();
+                    m.istore(localOf[code[pc + 1]]);
+                    break;
+                case RegisterOpcode.LT: {
+                    MethodCode.Label no = m.newLabel();
+                    MethodCode.Label done = m.newLabel();
+                    int dst = localOf[code[pc + 1]];
+                    load(m, localOf, code[pc + 2]);
+                    load(m, localOf, code[pc + 3]);
+                    m.jump(Bytecode.IF_ICMPGE, no);
+                    m.iconst(1);
+                    m.istore(dst);
+                    m.jump(Bytecode.GOTO, done);
+                    m.mark(no);
+                    m.iconst(0);
+                    m.istore(dst);
+                    m.mark(done);
+                    break;
+                }
+                case RegisterOpcode.JMP:
+                    // The trace is already laid out in execution order
+                    break;
+                case RegisterOpcode.JZ:
+                case RegisterOpcode.JNZ: {
+                    boolean jumped = taken[guard++];
+                    boolean jumpIfZero = code[pc] == RegisterOpcode.JZ;
+                    // Leave the trace when the condition goes the other way
+                    // than it did while recording
+                    boolean exitIfZero = (jumpIfZero != jumped);
+                    exits[i] = m.newLabel();
+                    exitTargets[i] = jumped ? pc + 3 : code[pc + 2];
+                    load(m, localOf, code[pc + 1]);
+                    m.jump(exitIfZero ? Bytecode.IFEQ : Bytecode.IFNE, exits[i]);
+                    break;
+                }
+                case RegisterOpcode.PRINT:
+                    m.aload(OUTPUT);
+                    load(m, localOf, code[pc + 1]);
+                    m.invokeinterface(CONSUMER, "accept", "(I)V");
+                    break;
+                case RegisterOpcode.READ:
+                    m.aload(INPUT);
+                    m.invokeinterface(SUPPLIER, "getAsInt", "()I");
+                    m.istore(localOf[code[pc + 1]]);
+                    break;
+                default:
+                    throw new VmError("Cannot trace " + RegisterOpcode.mnemonic(code[pc]));
+            }
+        }
+        m.jump(Bytecode.GOTO, top);
+
+        // Side exits: remember where to resume, then write everything back
+        for (int i = 0; i < pcs.length; i++) {
+            if (exits[i] != null) {
+                m.mark(exits[i]);
+                m.iconst(exitTargets[i]);
+                m.istore(exitPc);
+                m.jump(Bytecode.GOTO, writeBack);
+            }
+        }
+        m.mark(writeBack);
+        for (int slot = 0; slot < localOf.length; slot++) {
+            if (localOf[slot] >= 0) {
+                m.aload(FRAME);
+                m.iconst(slot);
+                m.iload(localOf[slot]);
+                m.iastore();
+            }
+        }
+        m.iload(exitPc);
+        m.ireturn();
+
+        writer.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, "run",
+                TRACE_TYPE.toMethodDescriptorString(), m);
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup()
+                .defineHiddenClass(writer.toByteArray(), true);
+        return lookup.findStatic(lookup.lookupClass(), "run", TRACE_TYPE);
+    }
+
+    private void load(MethodCode m, int[] localOf, int slot) {
+        if (slot >= program.variableCount) {
+            m.iconst(program.frameTemplate[slot]);
+        } else {
+            m.iload(localOf[slot]);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package vm;
+
+/**
+ * Raised when a program cannot be loaded or executed by one of the VMs.
+ */
+public class VmError extends RuntimeException {
+    public VmError(String message) {
+        super(message);
+    }
+}